@@ -0,0 +1,38 @@
+package com.example.finalyearproject.Abstraction;
+
+import com.example.finalyearproject.DataStore.FarmerOrderLine;
+import com.example.finalyearproject.DataStore.OrderStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FarmerOrderLineRepo extends JpaRepository<FarmerOrderLine, Integer> {
+
+    Page<FarmerOrderLine> findByFarmerIdAndOrderStatus(int farmerId, OrderStatus orderStatus, Pageable pageable);
+
+    Page<FarmerOrderLine> findByFarmerId(int farmerId, Pageable pageable);
+
+    boolean existsByFarmerIdAndOrderId(int farmerId, int orderId);
+
+    // Keep the lines of an order in step with its status
+    @Modifying
+    @Query("UPDATE FarmerOrderLine l SET l.orderStatus = :status WHERE l.orderId = :orderId")
+    int updateStatusByOrderId(@Param("orderId") int orderId, @Param("status") OrderStatus status);
+
+    // Copy the lines of orders placed before the table existed, skipping the ones already there
+    @Modifying
+    @Query("INSERT INTO FarmerOrderLine (farmerId, orderId, orderItemId, productId, productName, quantity, " +
+            "lineTotalCents, orderStatus, placedAt, consumerName, shippingAddress, shippingCity, shippingState, shippingZip) " +
+            "SELECT p.farmer.farmerId, o.orderId, oi.orderItemId, p.productId, p.name, oi.quantity, " +
+            "oi.unitPriceCents, o.orderStatus, o.placedAt, CONCAT(c.consumerFirstName, ' ', c.consumerLastName), " +
+            "o.shippingAddress, o.shippingCity, o.shippingState, o.shippingZip " +
+            "FROM OrderItem oi JOIN oi.order o JOIN oi.product p JOIN o.consumer c " +
+            "WHERE o.orderStatus <> 'CREATED' " +
+            "AND NOT EXISTS (SELECT 1 FROM FarmerOrderLine l WHERE l.orderItemId = oi.orderItemId)")
+    int backfillMissingLines();
+}
@@ -1,10 +1,12 @@
 package com.example.finalyearproject.Abstraction;
 
 import com.example.finalyearproject.DataStore.Farmer;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
@@ -21,4 +23,26 @@ public interface FarmerRepo extends JpaRepository<Farmer,Integer> {
      void updateByFarmerId(Farmer farmer,int farmerId);
 
     Farmer findByFarmerEmail(String farmerEmail);
+
+    // Same as ProductRepo.addToRatingAggregates for the farmer's aggregates over all their products
+    @Modifying
+    @Query("update Farmer f set f.averageRating = case when coalesce(f.ratingCount, 0) + :countDelta > 0" +
+            " then (coalesce(f.totalRating, 0) + :scoreDelta) / (coalesce(f.ratingCount, 0) + :countDelta) else 0 end," +
+            " f.totalRating = coalesce(f.totalRating, 0) + :scoreDelta," +
+            " f.ratingCount = coalesce(f.ratingCount, 0) + :countDelta where f.farmerId = :farmerId")
+    int addToRatingAggregates(@Param("farmerId") int farmerId, @Param("scoreDelta") double scoreDelta,
+                              @Param("countDelta") int countDelta);
+
+    // Recomputes the exact aggregates of a range of farmers from the ratings of their products
+    @Modifying
+    @Transactional
+    @Query("update Farmer f set" +
+            " f.totalRating = coalesce((select sum(r.score * 1.0) from Rating r where r.product.farmer = f), 0)," +
+            " f.ratingCount = (select count(r) from Rating r where r.product.farmer = f)," +
+            " f.averageRating = coalesce((select avg(r.score * 1.0) from Rating r where r.product.farmer = f), 0)" +
+            " where f.farmerId between :fromId and :toId")
+    int recomputeRatingAggregates(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    @Query("select coalesce(max(f.farmerId), 0) from Farmer f")
+    int findMaxFarmerId();
 }
@@ -1,6 +1,7 @@
 package com.example.finalyearproject.Abstraction;
 
 import com.example.finalyearproject.DataStore.OrderItem;
+import com.example.finalyearproject.Utility.RatingEligibilityDTO;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -11,6 +12,10 @@ import java.util.List;
 
 public interface OrderItemRepo extends JpaRepository<OrderItem, Integer> {
 
+    // Price and stock of the product being propagated, as of the update
+    String CURRENT_PRICE = "(SELECT p.priceCents FROM Product p WHERE p.productId = :productId)";
+    String CURRENT_STOCK = "(SELECT p.stock FROM Product p WHERE p.productId = :productId)";
+
     @Query("select o from OrderItem o where o.order.consumer.consumerId=:#{#consumerId} and o.order.orderStatus='CREATED' and o.orderItemId=:#{#orderItemId}")
     OrderItem findOrderItemWithStatusCREATED(int consumerId, int orderItemId);
 
@@ -25,4 +30,40 @@ public interface OrderItemRepo extends JpaRepository<OrderItem, Integer> {
     List<OrderItem> findByProductIdAndConsumerId(
             @Param("productId") int productId,
             @Param("consumerId") int consumerId);
-}
\ No newline at end of file
+
+    // Rating eligibility of every item of the consumer's order in one query, empty when the order is not theirs
+    @Query("SELECT new com.example.finalyearproject.Utility.RatingEligibilityDTO(oi.orderItemId, oi.product.productId, " +
+            "o.orderStatus, oi.isRated, " +
+            "(SELECT MAX(r.ratingId) FROM Rating r WHERE r.product = oi.product AND r.consumer = o.consumer)) " +
+            "FROM OrderItem oi JOIN oi.order o " +
+            "WHERE o.orderId = :orderId AND o.consumer.consumerEmail = :consumerEmail ORDER BY oi.orderItemId")
+    List<RatingEligibilityDTO> findRatingEligibilityByOrderId(@Param("orderId") int orderId,
+                                                              @Param("consumerEmail") String consumerEmail);
+
+    @Query("SELECT COUNT(oi) FROM OrderItem oi WHERE oi.product.productId = :productId AND oi.order.orderStatus = 'CREATED'")
+    long countOpenCartItemsByProductId(@Param("productId") int productId);
+
+    /**
+     * Reprice the product's lines in open carts from the product row and, when trimToStock is set, trim them
+     * to its stock. Reading the row rather than values captured at edit time means a late or repeated run
+     * still writes the current price.
+     * Quantity is assigned last because MySQL evaluates the assignments left to right.
+     */
+    @Modifying
+    @Query("UPDATE OrderItem oi SET " +
+            "oi.fieldChange = CASE WHEN :trimToStock = true AND oi.quantity > " + CURRENT_STOCK + " THEN CONCAT(:priceChange, ' | Stock Reduced') " +
+            "WHEN :priceChange <> '' THEN :priceChange ELSE oi.fieldChange END, " +
+            "oi.unitPriceCents = " + CURRENT_PRICE + " * CASE WHEN :trimToStock = true AND oi.quantity > " + CURRENT_STOCK + " " +
+            "THEN " + CURRENT_STOCK + " ELSE oi.quantity END, " +
+            "oi.quantity = CASE WHEN :trimToStock = true AND oi.quantity > " + CURRENT_STOCK + " THEN " + CURRENT_STOCK + " ELSE oi.quantity END " +
+            "WHERE oi.product.productId = :productId AND oi.order.orderId IN (SELECT o.orderId FROM Order o " +
+            "WHERE o.orderStatus = 'CREATED')")
+    int repriceOpenCartItems(@Param("productId") int productId,
+                             @Param("trimToStock") boolean trimToStock,
+                             @Param("priceChange") String priceChange);
+
+    // Consumer ID and quantity of the open cart lines of the product at its stock, the lines a trim left
+    @Query("SELECT o.consumer.consumerId, oi.quantity FROM OrderItem oi JOIN oi.order o " +
+            "WHERE oi.product.productId = :productId AND o.orderStatus = 'CREATED' AND oi.quantity >= " + CURRENT_STOCK)
+    List<Object[]> findOpenCartQuantitiesAtStock(@Param("productId") int productId);
+}
@@ -2,16 +2,23 @@ package com.example.finalyearproject.Abstraction;
 
 import com.example.finalyearproject.DataStore.Order;
 import com.example.finalyearproject.DataStore.OrderStatus;
+import com.example.finalyearproject.Utility.OrderSummaryDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepo extends JpaRepository<Order, Integer> {
     // Find active cart (order with CREATED status) for a consumer
+    @EntityGraph("Order.withItems")
     @Query("SELECT o FROM Order o WHERE o.consumer.consumerId = :consumerId AND o.orderStatus = 'CREATED'")
     Order findActiveCartByConsumerId(@Param("consumerId") int consumerId);
 
@@ -23,13 +30,41 @@ public interface OrderRepo extends JpaRepository<Order, Integer> {
     @Query("SELECT o FROM Order o WHERE o.orderStatus = :status AND o.consumer.consumerId = :consumerId")
     Order findByStatusAndConsumerId(@Param("status") String status, @Param("consumerId") int consumerId);
 
-    // Find consumer's orders
-    List<Order> findByConsumer_ConsumerIdOrderByCreatedAtDesc(int consumerId);
+    // Order history rows, newest first, read along the (consumer_id, created_at) index. The cart is left out.
+    // The thumbnail is the lowest-ID image of any ordered product.
+    String SUMMARY_SELECT = "SELECT new com.example.finalyearproject.Utility.OrderSummaryDTO(" +
+            "o.orderId, o.orderStatus, o.totalAmountCents, o.createdAt, o.placedAt, " +
+            "(SELECT COUNT(oi) FROM OrderItem oi WHERE oi.order = o), " +
+            "(SELECT i.filePath FROM ProductImage i WHERE i.id = " +
+            "(SELECT MIN(i2.id) FROM ProductImage i2, OrderItem oi2 WHERE i2.product = oi2.product AND oi2.order = o))) " +
+            "FROM Order o WHERE o.consumer.consumerId = :consumerId AND o.orderStatus <> 'CREATED'";
+
+    String SUMMARY_ORDER = " ORDER BY o.createdAt DESC, o.orderId DESC";
+
+    @Query(SUMMARY_SELECT + SUMMARY_ORDER)
+    List<OrderSummaryDTO> findSummariesByConsumerId(@Param("consumerId") int consumerId, Pageable pageable);
+
+    // The page after the given order
+    @Query(SUMMARY_SELECT + " AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.orderId < :orderId))" +
+            SUMMARY_ORDER)
+    List<OrderSummaryDTO> findSummariesByConsumerIdBefore(@Param("consumerId") int consumerId,
+                                                         @Param("createdAt") Date createdAt,
+                                                         @Param("orderId") int orderId,
+                                                         Pageable pageable);
+
+    // Single order with its items, products and delivery address
+    @EntityGraph("Order.withItems")
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findWithItemsByOrderId(@Param("orderId") int orderId);
 
 //    // Find orders by status
 //    List<Order> findByOrderStatus(OrderStatus status);
 
-    @Query("SELECT DISTINCT o FROM Order o JOIN o.orderItems oi JOIN oi.product p JOIN p.farmer f " +
-            "WHERE f.farmerEmail = :farmerEmail AND o.orderStatus = 'PLACED'")
-    List<Order> findPlacedOrdersContainingFarmerProducts(@Param("farmerEmail") String farmerEmail);
-}
\ No newline at end of file
+    // Recompute the totals of the open carts holding the product from their lines
+    @Modifying
+    @Query("UPDATE Order o SET o.totalAmountCents = " +
+            "(SELECT COALESCE(SUM(oi.unitPriceCents), 0) FROM OrderItem oi WHERE oi.order.orderId = o.orderId) " +
+            "WHERE o.orderStatus = 'CREATED' " +
+            "AND o.orderId IN (SELECT i.order.orderId FROM OrderItem i WHERE i.product.productId = :productId)")
+    int recomputeOpenCartTotals(@Param("productId") int productId);
+}
@@ -3,6 +3,7 @@ package com.example.finalyearproject.Abstraction;
 import com.example.finalyearproject.DataStore.CategoryType;
 import com.example.finalyearproject.DataStore.Order;
 import com.example.finalyearproject.DataStore.Product;
+import com.example.finalyearproject.Utility.ProductSummaryDTO;
 import jakarta.transaction.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -14,6 +15,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,7 +27,7 @@ public interface ProductRepo extends JpaRepository<Product, Integer>, JpaSpecifi
 
     @Modifying
     @Transactional
-    @Query("update Product p set p.name=:#{#product.name}, p.description=:#{#product.description}, p.price=:#{#product.price}" +
+    @Query("update Product p set p.name=:#{#product.name}, p.description=:#{#product.description}, p.priceCents=:#{#product.priceCents}" +
             ", p.stock=:#{#product.stock} where p.productId=:#{#productId} and p.farmer.farmerId=:#{#farmerId}")
     void updateProductById(Product product, int productId, int farmerId);
 
@@ -33,6 +35,55 @@ public interface ProductRepo extends JpaRepository<Product, Integer>, JpaSpecifi
     @Query("delete Product where productId=:#{#productId} and farmer.farmerId=:#{#farmerId}")
     void deleteByProductId(int productId, int farmerId);
 
+    // Takes the quantity only if that much is in stock, returns 0 otherwise so a sale can never oversell
+    @Modifying
+    @Query("update Product p set p.stock = p.stock - :quantity, p.version = p.version + 1" +
+            " where p.productId = :productId and p.stock >= :quantity")
+    int decrementStock(@Param("productId") int productId, @Param("quantity") int quantity);
+
+    // Gives back stock taken by decrementStock
+    @Modifying
+    @Query("update Product p set p.stock = p.stock + :quantity, p.version = p.version + 1 where p.productId = :productId")
+    int incrementStock(@Param("productId") int productId, @Param("quantity") int quantity);
+
+    // Applies a rating change to the aggregates and the star counts in one statement, so concurrent ratings cannot
+    // lose updates. addedScore is the score of the rating added (0 for none) and removedScore of the one removed,
+    // an edited rating has both. averageRating is assigned first because MySQL applies assignments left to right,
+    // this way it reads the old totals on every database. Product.version is left alone, rating a product does
+    // not conflict with buying it.
+    @Modifying
+    @Query("update Product p set p.averageRating = case when coalesce(p.ratingCount, 0) + :countDelta > 0" +
+            " then (coalesce(p.totalRating, 0) + :scoreDelta) / (coalesce(p.ratingCount, 0) + :countDelta) else 0 end," +
+            " p.totalRating = coalesce(p.totalRating, 0) + :scoreDelta," +
+            " p.ratingCount = coalesce(p.ratingCount, 0) + :countDelta," +
+            " p.oneStarCount = p.oneStarCount + (case when :addedScore = 1 then 1 else 0 end) - (case when :removedScore = 1 then 1 else 0 end)," +
+            " p.twoStarCount = p.twoStarCount + (case when :addedScore = 2 then 1 else 0 end) - (case when :removedScore = 2 then 1 else 0 end)," +
+            " p.threeStarCount = p.threeStarCount + (case when :addedScore = 3 then 1 else 0 end) - (case when :removedScore = 3 then 1 else 0 end)," +
+            " p.fourStarCount = p.fourStarCount + (case when :addedScore = 4 then 1 else 0 end) - (case when :removedScore = 4 then 1 else 0 end)," +
+            " p.fiveStarCount = p.fiveStarCount + (case when :addedScore = 5 then 1 else 0 end) - (case when :removedScore = 5 then 1 else 0 end)" +
+            " where p.productId = :productId")
+    int addToRatingAggregates(@Param("productId") int productId, @Param("scoreDelta") double scoreDelta,
+                              @Param("countDelta") int countDelta, @Param("addedScore") int addedScore,
+                              @Param("removedScore") int removedScore);
+
+    // Recomputes the exact aggregates and star counts of a range of products from the rating table
+    @Modifying
+    @Transactional
+    @Query("update Product p set" +
+            " p.totalRating = coalesce((select sum(r.score * 1.0) from Rating r where r.product = p), 0)," +
+            " p.ratingCount = (select count(r) from Rating r where r.product = p)," +
+            " p.averageRating = coalesce((select avg(r.score * 1.0) from Rating r where r.product = p), 0)," +
+            " p.oneStarCount = (select count(r) from Rating r where r.product = p and r.score = 1)," +
+            " p.twoStarCount = (select count(r) from Rating r where r.product = p and r.score = 2)," +
+            " p.threeStarCount = (select count(r) from Rating r where r.product = p and r.score = 3)," +
+            " p.fourStarCount = (select count(r) from Rating r where r.product = p and r.score = 4)," +
+            " p.fiveStarCount = (select count(r) from Rating r where r.product = p and r.score = 5)" +
+            " where p.productId between :fromId and :toId")
+    int recomputeRatingAggregates(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    @Query("select coalesce(max(p.productId), 0) from Product p")
+    int findMaxProductId();
+
     List<Product> findByCategory(CategoryType category);
 
     Optional<Product> findByFarmer_FarmerIdAndProductId(int farmerId, int productId);
@@ -41,8 +92,46 @@ public interface ProductRepo extends JpaRepository<Product, Integer>, JpaSpecifi
 
     List<Product> findByNameContainingIgnoreCase(String query);
 
+    // Text columns for building the in-memory search index
+    @Query("SELECT p.productId, p.name, p.description FROM Product p")
+    List<Object[]> findAllSearchableText();
+
+    // Filterable columns for building the in-memory facet index
+    @Query("SELECT p.productId, p.category, p.isOrganic, p.priceCents, p.stock, p.availableFromDate FROM Product p")
+    List<Object[]> findAllFacetColumns();
+
+    // Name and ranking columns for building the in-memory autocomplete index
+    @Query("SELECT p.productId, p.name, p.averageRating, p.stock FROM Product p")
+    List<Object[]> findAllSuggestionColumns();
+
     List<Product> findTop10ByOrderByAverageRatingDesc();
 
+    // Summary projections for list endpoints, the primary image is the one with the lowest ID
+    String SUMMARY_SELECT = "SELECT new com.example.finalyearproject.Utility.ProductSummaryDTO(" +
+            "p.productId, p.name, p.priceCents, p.stock, p.category, p.averageRating, " +
+            "(SELECT i.filePath FROM ProductImage i WHERE i.product = p AND i.id = " +
+            "(SELECT MIN(i2.id) FROM ProductImage i2 WHERE i2.product = p))) FROM Product p";
+
+    @Query(SUMMARY_SELECT)
+    List<ProductSummaryDTO> findAllSummaries();
+
+    @Query(SUMMARY_SELECT + " WHERE p.category = :category")
+    List<ProductSummaryDTO> findSummariesByCategory(@Param("category") CategoryType category);
+
+    @Query(SUMMARY_SELECT + " ORDER BY p.productId DESC")
+    List<ProductSummaryDTO> findSummariesByNewest(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE p.productId IN :ids")
+    List<ProductSummaryDTO> findSummariesByIds(@Param("ids") Collection<Integer> ids);
+
+    // Rating and stock columns for reconciling the featured products leaderboard
+    @Query("SELECT p.productId, p.totalRating, p.ratingCount, p.stock FROM Product p")
+    List<Object[]> findAllRatingColumns();
+
+    // Stock and version columns for reconciling the stock reservation counters
+    @Query("SELECT p.productId, p.stock, p.version FROM Product p WHERE p.productId IN :productIds")
+    List<Object[]> findStockColumnsByIds(@Param("productIds") Collection<Integer> productIds);
+
     List<Product> findTop10ByOrderByProductIdDesc();
 
     Optional<Product> findByProductId(int productId);
@@ -1,10 +1,15 @@
 package com.example.finalyearproject.Abstraction;
 
 import com.example.finalyearproject.DataStore.Rating;
+import com.example.finalyearproject.Utility.ReviewDTO;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
 
@@ -21,5 +26,34 @@ public interface RatingRepo extends JpaRepository<Rating,Integer> {
 
     Set<Rating> findByConsumer_ConsumerId(int consumerId);
 
+    // Reviews of a product for keyset pagination, each sort has a query for the first page and one for the
+    // page after a given review. Newest reads the (product_id, timestamp) index, highest and lowest (product_id, score).
+    String REVIEW_SELECT = "SELECT new com.example.finalyearproject.Utility.ReviewDTO(" +
+            "r.ratingId, r.score, r.comment, r.timestamp) FROM Rating r WHERE r.product.productId = :productId";
+
+    @Query(REVIEW_SELECT + " ORDER BY r.timestamp DESC, r.ratingId DESC")
+    List<ReviewDTO> findNewestReviews(@Param("productId") int productId, Pageable pageable);
+
+    @Query(REVIEW_SELECT + " AND (r.timestamp < :timestamp OR (r.timestamp = :timestamp AND r.ratingId < :ratingId))" +
+            " ORDER BY r.timestamp DESC, r.ratingId DESC")
+    List<ReviewDTO> findNewestReviewsAfter(@Param("productId") int productId, @Param("timestamp") LocalDateTime timestamp,
+                                           @Param("ratingId") int ratingId, Pageable pageable);
+
+    @Query(REVIEW_SELECT + " ORDER BY r.score DESC, r.ratingId DESC")
+    List<ReviewDTO> findHighestReviews(@Param("productId") int productId, Pageable pageable);
+
+    @Query(REVIEW_SELECT + " AND (r.score < :score OR (r.score = :score AND r.ratingId < :ratingId))" +
+            " ORDER BY r.score DESC, r.ratingId DESC")
+    List<ReviewDTO> findHighestReviewsAfter(@Param("productId") int productId, @Param("score") int score,
+                                            @Param("ratingId") int ratingId, Pageable pageable);
+
+    @Query(REVIEW_SELECT + " ORDER BY r.score ASC, r.ratingId ASC")
+    List<ReviewDTO> findLowestReviews(@Param("productId") int productId, Pageable pageable);
+
+    @Query(REVIEW_SELECT + " AND (r.score > :score OR (r.score = :score AND r.ratingId > :ratingId))" +
+            " ORDER BY r.score ASC, r.ratingId ASC")
+    List<ReviewDTO> findLowestReviewsAfter(@Param("productId") int productId, @Param("score") int score,
+                                           @Param("ratingId") int ratingId, Pageable pageable);
+
 
 }
@@ -0,0 +1,32 @@
+package com.example.finalyearproject.Configs;
+
+import com.example.finalyearproject.Abstraction.FarmerOrderLineRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Fills farmer_order_line with the orders placed before it existed, new orders write their lines when placed.
+ * Only inserts the missing lines, so later starts do nothing.
+ */
+@Component
+public class FarmerOrderLineBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(FarmerOrderLineBackfill.class);
+
+    @Autowired
+    private FarmerOrderLineRepo farmerOrderLineRepo;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        int lines = farmerOrderLineRepo.backfillMissingLines();
+        if (lines > 0) {
+            logger.info("Backfilled {} farmer order lines", lines);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.finalyearproject.Configs;
 
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.customExceptions.IdempotencyConflictException;
+import com.example.finalyearproject.customExceptions.InvalidIdempotencyKeyException;
 import com.example.finalyearproject.customExceptions.ResourceNotFoundException;
 import jakarta.validation.ConstraintViolationException;
 import org.springframework.http.HttpStatus;
@@ -58,6 +60,22 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error("Resource not found", ex.getMessage()));
     }
 
+    // Handle an Idempotency-Key reused for another request or whose first request is still running
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ApiResponse<Object>> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error("Idempotency key conflict", ex.getMessage()));
+    }
+
+    // Handle an Idempotency-Key the client should not have sent
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<ApiResponse<Object>> handleInvalidIdempotencyKey(InvalidIdempotencyKeyException ex) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("Invalid idempotency key", ex.getMessage()));
+    }
+
     // Catch-all exception handler
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<Object>> handleAllOtherExceptions(Exception ex) {
@@ -0,0 +1,145 @@
+package com.example.finalyearproject.Configs;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Converts the decimal money columns to the whole cents columns that replaced them, in two steps.
+ * At startup, once Hibernate has added the new columns and before any request is served, each table is copied
+ * once, rounded to cents, and the copy is checked against the originals. The copy is recorded in
+ * money_cents_migration so later starts never overwrite newer values. The old columns are left in place, no
+ * longer mapped, so instances of the previous version keep working during a rolling deploy.
+ * Once no such instance is left, starting with money.cents.drop-legacy-columns=true drops the old columns of
+ * the tables whose copy checked out.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class MoneyCentsMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MoneyCentsMigration.class);
+
+    // table, old decimal column, new cents column
+    private static final String[][] COLUMNS = {
+            {"product", "price", "price_cents"},
+            {"order_item", "unit_price", "unit_price_cents"},
+            {"orders", "total_amount", "total_amount_cents"}
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${money.cents.drop-legacy-columns:false}")
+    private boolean dropLegacyColumns;
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS money_cents_migration (" +
+                "table_name VARCHAR(64) NOT NULL PRIMARY KEY, copied_rows BIGINT NOT NULL, " +
+                "rounded_rows BIGINT NOT NULL, copied_at TIMESTAMP NOT NULL)");
+
+        for (String[] column : COLUMNS) {
+            String table = column[0];
+            String oldColumn = column[1];
+            String centsColumn = column[2];
+            if (!hasColumn(table, oldColumn)) {
+                continue;
+            }
+
+            if (!isCopied(table)) {
+                try {
+                    copy(table, oldColumn, centsColumn);
+                } catch (DuplicateKeyException e) {
+                    logger.info("{}.{} was copied by another instance", table, oldColumn);
+                }
+            } else if (dropLegacyColumns) {
+                dropLegacyColumn(table, oldColumn, centsColumn);
+            }
+        }
+    }
+
+    /**
+     * Copy every value of the old column to the cents column and record it, all in one transaction. The marker
+     * row is inserted first, so of two instances starting together only one copies.
+     */
+    private void copy(String table, String oldColumn, String centsColumn) {
+        // Each version only writes its own column, defaults keep the inserts of both valid during the deploy
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + oldColumn + " SET DEFAULT 0");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + centsColumn + " SET DEFAULT 0");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO money_cents_migration (table_name, copied_rows, rounded_rows, copied_at) " +
+                    "VALUES (?, 0, 0, CURRENT_TIMESTAMP)", table);
+
+            int rows = jdbcTemplate.update("UPDATE " + table + " SET " + centsColumn + " = ROUND(" + oldColumn +
+                    " * 100) WHERE " + oldColumn + " IS NOT NULL");
+
+            long mismatched = count(table, oldColumn + " IS NOT NULL AND " + centsColumn + " <> ROUND(" + oldColumn + " * 100)");
+            if (mismatched > 0) {
+                throw new IllegalStateException(mismatched + " rows of " + table + "." + oldColumn +
+                        " did not convert to cents, nothing was copied");
+            }
+            // Values with fractions of a cent, rounded to the nearest cent
+            long rounded = count(table, oldColumn + " IS NOT NULL AND ABS(" + centsColumn + " - " + oldColumn + " * 100) > 0.0001");
+
+            jdbcTemplate.update("UPDATE money_cents_migration SET copied_rows = ?, rounded_rows = ? WHERE table_name = ?",
+                    rows, rounded, table);
+            logger.info("Copied {} rows of {}.{} to {}, {} rounded to the nearest cent",
+                    rows, table, oldColumn, centsColumn, rounded);
+        });
+    }
+
+    /**
+     * Drop the old column once the previous version is gone, first converting rows it wrote after the copy
+     */
+    private void dropLegacyColumn(String table, String oldColumn, String centsColumn) {
+        int late = jdbcTemplate.update("UPDATE " + table + " SET " + centsColumn + " = ROUND(" + oldColumn +
+                " * 100) WHERE " + centsColumn + " = 0 AND " + oldColumn + " <> 0");
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN " + oldColumn);
+        logger.info("Dropped {}.{}, converted {} rows written after the copy", table, oldColumn, late);
+    }
+
+    private boolean isCopied(String table) {
+        List<Long> copied = jdbcTemplate.queryForList(
+                "SELECT copied_rows FROM money_cents_migration WHERE table_name = ?", Long.class, table);
+        return !copied.isEmpty();
+    }
+
+    private long count(String table, String condition) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE " + condition, Long.class);
+        return count != null ? count : 0;
+    }
+
+    private boolean hasColumn(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // MySQL keeps the names in lower case, H2 in upper case
+            for (String tableName : new String[]{table, table.toUpperCase()}) {
+                try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, tableName, null)) {
+                    while (columns.next()) {
+                        if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+}
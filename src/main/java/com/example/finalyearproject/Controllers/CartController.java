@@ -6,6 +6,9 @@ import com.example.finalyearproject.DataStore.OrderItem;
 import com.example.finalyearproject.Services.CartService;
 import com.example.finalyearproject.Services.ConsumerService;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CartBatchDTO;
+import com.example.finalyearproject.Utility.IdempotencyStore;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -25,6 +28,9 @@ public class CartController {
     @Autowired
     private ConsumerService consumerService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     /**
      * Add item to cart
      */
@@ -33,18 +39,47 @@ public class CartController {
     public ResponseEntity<ApiResponse<Set<OrderItem>>> addToCart(
             @RequestParam int productId,
             @RequestParam int quantity,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
 
-        Consumer consumer = consumerService.findByEmail(authentication.getName());
-        if (consumer == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error("Consumer not found", "Authentication failed"));
-        }
+        return idempotencyStore.execute(authentication.getName() + " POST /cart/add", idempotencyKey,
+                productId + ":" + quantity, () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
 
-        ApiResponse<Set<OrderItem>> response =
-                cartService.addToCart(consumer.getConsumerId(), productId, quantity);
+            ApiResponse<Set<OrderItem>> response =
+                    cartService.addToCart(consumer.getConsumerId(), productId, quantity);
 
-        return ResponseEntity.ok(response);
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    /**
+     * Apply several cart changes at once, e.g. to sync a cart built offline
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasAuthority('CONSUMER')")
+    public ResponseEntity<ApiResponse<Set<OrderItem>>> applyBatch(
+            @RequestBody @Valid CartBatchDTO batchDTO,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+
+        return idempotencyStore.execute(authentication.getName() + " POST /cart/batch", idempotencyKey,
+                batchDTO.toString(), () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
+
+            ApiResponse<Set<OrderItem>> response =
+                    cartService.applyBatch(consumer.getConsumerId(), batchDTO.getOperations());
+
+            return ResponseEntity.ok(response);
+        });
     }
 
     /**
@@ -55,18 +90,22 @@ public class CartController {
     public ResponseEntity<ApiResponse<Set<OrderItem>>> removeFromCart(
             @PathVariable int orderItemId,
             @RequestParam int quantity,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
 
-        Consumer consumer = consumerService.findByEmail(authentication.getName());
-        if (consumer == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error("Consumer not found", "Authentication failed"));
-        }
+        return idempotencyStore.execute(authentication.getName() + " DELETE /cart/{orderItemId}", idempotencyKey,
+                orderItemId + ":" + quantity, () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
 
-        ApiResponse<Set<OrderItem>> response =
-                cartService.removeFromCart(consumer.getConsumerId(), orderItemId, quantity);
+            ApiResponse<Set<OrderItem>> response =
+                    cartService.removeFromCart(consumer.getConsumerId(), orderItemId, quantity);
 
-        return ResponseEntity.ok(response);
+            return ResponseEntity.ok(response);
+        });
     }
 
     /**
@@ -90,16 +129,22 @@ public class CartController {
      */
     @PutMapping("/acknowledge-changes")
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<Set<OrderItem>>> acknowledgeChanges(Authentication authentication) {
-        Consumer consumer = consumerService.findByEmail(authentication.getName());
-        if (consumer == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(ApiResponse.error("Consumer not found", "Authentication failed"));
-        }
+    public ResponseEntity<ApiResponse<Set<OrderItem>>> acknowledgeChanges(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
 
-        ApiResponse<Set<OrderItem>> response =
-                cartService.acknowledgeChanges(consumer.getConsumerId());
+        return idempotencyStore.execute(authentication.getName() + " PUT /cart/acknowledge-changes", idempotencyKey,
+                "", () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
 
-        return ResponseEntity.ok(response);
+            ApiResponse<Set<OrderItem>> response =
+                    cartService.acknowledgeChanges(consumer.getConsumerId());
+
+            return ResponseEntity.ok(response);
+        });
     }
 }
\ No newline at end of file
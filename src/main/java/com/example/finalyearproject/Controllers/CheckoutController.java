@@ -1,7 +1,10 @@
 package com.example.finalyearproject.Controllers;
 
+import com.example.finalyearproject.Utility.IdempotencyStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.security.core.Authentication;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +28,9 @@ public class CheckoutController {
     @Value("${paypal.url}")
     private String payPalUrl;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     private final RestTemplate restTemplate;
 
     public CheckoutController() {
@@ -42,7 +48,16 @@ public class CheckoutController {
     }
 
     @PostMapping("/Approval")
-    public ResponseEntity<?> completeOrder(@RequestBody String data) {
+    public ResponseEntity<?> completeOrder(
+            @RequestBody String data,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        // A retried capture would be rejected by PayPal as already captured, so it gets the first result instead
+        return idempotencyStore.execute(authentication.getName() + " POST /checkout/Approval", idempotencyKey,
+                data, () -> capturePayPalOrder(data));
+    }
+
+    private ResponseEntity<?> capturePayPalOrder(String data) {
         try {
             JSONObject jsonData = new JSONObject(data);
             String orderId = jsonData.optString("orderId", "");
@@ -78,7 +93,15 @@ public class CheckoutController {
     }
 
     @PostMapping("/create-order/{transactionAmount}")
-    public ResponseEntity<?> createOrder(@PathVariable("transactionAmount") int transactionAmount) {
+    public ResponseEntity<?> createOrder(
+            @PathVariable("transactionAmount") int transactionAmount,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        return idempotencyStore.execute(authentication.getName() + " POST /checkout/create-order", idempotencyKey,
+                String.valueOf(transactionAmount), () -> createPayPalOrder(transactionAmount));
+    }
+
+    private ResponseEntity<?> createPayPalOrder(int transactionAmount) {
         try {
             int totalAmount = transactionAmount == 0 ? 10 : transactionAmount;
 
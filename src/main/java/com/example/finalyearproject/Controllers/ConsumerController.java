@@ -7,6 +7,9 @@ import com.example.finalyearproject.Services.OrderService;
 import com.example.finalyearproject.Services.ProductService;
 import com.example.finalyearproject.Services.RatingServices;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
+import com.example.finalyearproject.Utility.OrderSummaryDTO;
+import com.example.finalyearproject.Utility.ProductSummaryDTO;
 import org.springframework.security.core.Authentication;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -36,8 +39,8 @@ public class ConsumerController {
 
     @GetMapping("/products")
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<List<Product>>> getAllProducts() {
-        ApiResponse<List<Product>> response = productService.getAllProducts();
+    public ResponseEntity<ApiResponse<List<ProductSummaryDTO>>> getAllProducts() {
+        ApiResponse<List<ProductSummaryDTO>> response = productService.getAllProducts();
         return ResponseEntity.ok(response);
     }
 
@@ -56,15 +59,16 @@ public class ConsumerController {
 
     @GetMapping("products/category/{category}")
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<List<Product>>> getProductsByCategory(@PathVariable String category) {
-        ApiResponse<List<Product>> response = productService.getProductsByCategory(category);
+    public ResponseEntity<ApiResponse<List<ProductSummaryDTO>>> getProductsByCategory(@PathVariable String category) {
+        ApiResponse<List<ProductSummaryDTO>> response = productService.getProductsByCategory(category);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("products/search")
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<List<Product>>> searchProducts(@RequestParam String query) {
-        ApiResponse<List<Product>> response = productService.searchProductsByName(query);
+    public ResponseEntity<ApiResponse<List<Product>>> searchProducts(@RequestParam String query,
+                                                                     @RequestParam(defaultValue = "false") boolean fuzzy) {
+        ApiResponse<List<Product>> response = productService.searchProductsByName(query, fuzzy);
         return ResponseEntity.ok(response);
     }
 
@@ -84,7 +88,10 @@ public class ConsumerController {
      */
     @GetMapping("/orders")
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<List<Order>>> getMyOrders(Authentication authentication) {
+    public ResponseEntity<ApiResponse<CursorPage<OrderSummaryDTO>>> getMyOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
         String consumerEmail = authentication.getName();
 
         // Find consumer by email
@@ -94,9 +101,14 @@ public class ConsumerController {
                     .body(ApiResponse.error("Consumer not found", "Authentication failed"));
         }
 
-        // Get orders for this consumer
-        List<Order> orders = orderService.getOrderHistory(consumer.getConsumerId());
-        return ResponseEntity.ok(ApiResponse.success("Orders retrieved successfully", orders));
+        // Get a slice of summaries, the full order comes from /consumer/orders/{orderId}
+        ApiResponse<CursorPage<OrderSummaryDTO>> response =
+                orderService.getOrderHistory(consumer.getConsumerId(), cursor, Math.min(Math.max(size, 1), 100));
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
     }
 
     /**
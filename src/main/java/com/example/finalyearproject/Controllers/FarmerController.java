@@ -6,11 +6,17 @@ import com.example.finalyearproject.Services.OrderService;
 import com.example.finalyearproject.Services.ProductService;
 import com.example.finalyearproject.Services.RatingServices;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
 import com.example.finalyearproject.Utility.FarmerUpdateDTO;
 import com.example.finalyearproject.Utility.FarmerUtility;
 import com.example.finalyearproject.Utility.ProductResponseUtility;
+import com.example.finalyearproject.Utility.ReviewDTO;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -101,9 +107,14 @@ public class FarmerController {
 
     @GetMapping("/ratings/{productId}")
     @PreAuthorize("hasAuthority('FARMER')")
-    public ResponseEntity<ApiResponse<Set<Rating>>> getProductRatings(@PathVariable int productId) {
+    public ResponseEntity<ApiResponse<CursorPage<ReviewDTO>>> getProductRatings(
+            @PathVariable int productId,
+            @RequestParam(defaultValue = "newest") String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            ApiResponse<Set<Rating>> response = ratingServices.getProductRatings(productId);
+            ApiResponse<CursorPage<ReviewDTO>> response =
+                    ratingServices.getProductRatings(productId, sortBy, cursor, Math.min(Math.max(size, 1), 100));
 
             if (response.getData() != null) {
                 return ResponseEntity.ok(response);
@@ -142,16 +153,41 @@ public class FarmerController {
     }
 
     /**
-     * Get all orders containing products from this farmer
+     * Get this farmer's order lines, newest first. Status is PLACED by default, ALL returns every status.
      */
     @GetMapping("/orders")
     @PreAuthorize("hasAuthority('FARMER')")
-    public ResponseEntity<ApiResponse<List<Order>>> getFarmerOrders(Authentication authentication) {
+    public ResponseEntity<ApiResponse<Page<FarmerOrderLine>>> getFarmerOrders(
+            @RequestParam(defaultValue = "PLACED") String status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
+
+        OrderStatus orderStatus = null;
+        if (!"ALL".equalsIgnoreCase(status)) {
+            try {
+                orderStatus = OrderStatus.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return invalidOrderStatus();
+            }
+            // Carts never reach the farmer
+            if (orderStatus == OrderStatus.CREATED) {
+                return invalidOrderStatus();
+            }
+        }
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100),
+                Sort.by(Sort.Order.desc("placedAt"), Sort.Order.desc("id")));
         String farmerEmail = authentication.getName();
-        ApiResponse<List<Order>> response = orderService.getFarmerOrders(farmerEmail);
+        ApiResponse<Page<FarmerOrderLine>> response = orderService.getFarmerOrders(farmerEmail, orderStatus, pageable);
         return ResponseEntity.ok(response);
     }
 
+    private static <T> ResponseEntity<ApiResponse<T>> invalidOrderStatus() {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("Invalid status", "Status must be PLACED, DELIVERED, COMPLETED or ALL"));
+    }
+
     /**
      * Get specific order details (if it contains farmer's products)
      */
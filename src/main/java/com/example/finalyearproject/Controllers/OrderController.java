@@ -3,9 +3,14 @@ package com.example.finalyearproject.Controllers;
 import com.example.finalyearproject.DataStore.Consumer;
 import com.example.finalyearproject.DataStore.Order;
 import com.example.finalyearproject.Services.ConsumerService;
+import com.example.finalyearproject.Services.OrderPlacementQueue;
 import com.example.finalyearproject.Services.OrderService;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
+import com.example.finalyearproject.Utility.OrderSummaryDTO;
+import com.example.finalyearproject.Utility.IdempotencyStore;
 import com.example.finalyearproject.Utility.OrderPlacementDTO;
+import com.example.finalyearproject.Utility.PlacementTicket;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -14,7 +19,6 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 
 @RestController
 @RequestMapping("/orders")
@@ -26,6 +30,12 @@ public class OrderController {
     @Autowired
     private ConsumerService consumerService;
 
+    @Autowired
+    private OrderPlacementQueue orderPlacementQueue;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     /**
      * Place order
      */
@@ -33,6 +43,65 @@ public class OrderController {
     @PreAuthorize("hasAuthority('CONSUMER')")
     public ResponseEntity<ApiResponse<Order>> placeOrder(
             @Valid @RequestBody OrderPlacementDTO placementDTO,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+
+        return idempotencyStore.execute(authentication.getName() + " POST /orders/place", idempotencyKey,
+                placementDTO.toString(), () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
+
+            ApiResponse<Order> response = orderService.placeOrder(consumer.getConsumerId(), placementDTO);
+
+            if (response.getData() != null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            } else {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+            }
+        });
+    }
+
+    /**
+     * Queue the order for placement, the result is polled with the returned ticket
+     */
+    @PostMapping("/place-async")
+    @PreAuthorize("hasAuthority('CONSUMER')")
+    public ResponseEntity<ApiResponse<PlacementTicket>> placeOrderAsync(
+            @Valid @RequestBody OrderPlacementDTO placementDTO,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+
+        // A retry gets the ticket of the first request back instead of queueing the cart again
+        return idempotencyStore.execute(authentication.getName() + " POST /orders/place-async", idempotencyKey,
+                placementDTO.toString(), () -> {
+            Consumer consumer = consumerService.findByEmail(authentication.getName());
+            if (consumer == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Consumer not found", "Authentication failed"));
+            }
+
+            ApiResponse<PlacementTicket> response = orderPlacementQueue.enqueue(consumer.getConsumerId(), placementDTO);
+
+            if (response.getData() != null) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            } else if ("Empty cart".equals(response.getMessage())) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+            } else {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+            }
+        });
+    }
+
+    /**
+     * Poll a queued order placement
+     */
+    @GetMapping("/placements/{ticketId}")
+    @PreAuthorize("hasAuthority('CONSUMER')")
+    public ResponseEntity<ApiResponse<PlacementTicket>> getPlacement(
+            @PathVariable String ticketId,
             Authentication authentication) {
 
         Consumer consumer = consumerService.findByEmail(authentication.getName());
@@ -41,29 +110,37 @@ public class OrderController {
                     .body(ApiResponse.error("Consumer not found", "Authentication failed"));
         }
 
-        ApiResponse<Order> response = orderService.placeOrder(consumer.getConsumerId(), placementDTO);
-
-        if (response.getData() != null) {
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
-        } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        PlacementTicket ticket = orderPlacementQueue.getTicket(ticketId, consumer.getConsumerId());
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("Placement not found", "No queued order found with ID: " + ticketId));
         }
+        return ResponseEntity.ok(ApiResponse.success(ticket.getMessage(), ticket));
     }
 
     /**
-     * Get order history
+     * Get order history, newest first. Pass nextCursor back as cursor for the next slice.
      */
     @GetMapping
     @PreAuthorize("hasAuthority('CONSUMER')")
-    public ResponseEntity<ApiResponse<List<Order>>> getOrderHistory(Authentication authentication) {
+    public ResponseEntity<ApiResponse<CursorPage<OrderSummaryDTO>>> getOrderHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication authentication) {
+
         Consumer consumer = consumerService.findByEmail(authentication.getName());
         if (consumer == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(ApiResponse.error("Consumer not found", "Authentication failed"));
         }
 
-        List<Order> orders = orderService.getOrderHistory(consumer.getConsumerId());
-        return ResponseEntity.ok(ApiResponse.success("Order history retrieved", orders));
+        ApiResponse<CursorPage<OrderSummaryDTO>> response =
+                orderService.getOrderHistory(consumer.getConsumerId(), cursor, Math.min(Math.max(size, 1), 100));
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
     }
 
     /**
@@ -5,7 +5,9 @@ import com.example.finalyearproject.DataStore.ProductImage;
 import com.example.finalyearproject.Services.ProductImageService;
 import com.example.finalyearproject.Services.ProductService;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
 import com.example.finalyearproject.Utility.ProductFilterDTO;
+import com.example.finalyearproject.Utility.ProductSuggestion;
 import com.example.finalyearproject.Utility.ProductUpdateDTO;
 import com.example.finalyearproject.Utility.ProductUtility;
 import jakarta.validation.Valid;
@@ -21,6 +23,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("product")
@@ -152,13 +155,51 @@ public class ProductController {
         }
     }
 
+    /**
+     * Name typeahead, ranked by stock availability and average rating
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<ApiResponse<List<ProductSuggestion>>> autocomplete(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        ApiResponse<List<ProductSuggestion>> response = productService.autocomplete(q, limit);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Cursor paginated variant of /filter for infinite scroll, pass nextCursor back as cursor
+     */
+    @GetMapping("/filter/scroll")
+    public ResponseEntity<ApiResponse<CursorPage<Product>>> scrollFilteredProducts(ProductFilterDTO filterDTO) {
+        ApiResponse<CursorPage<Product>> response = productService.getFilteredProductsByCursor(filterDTO);
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Hit/miss counters of the product cache
+     */
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
     @GetMapping("/public/products/random")
     public ResponseEntity<ApiResponse<Page<Product>>> getRandomProducts(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String seed) {
         Pageable pageable = PageRequest.of(page, size);
-        ApiResponse<Page<Product>> response = productService.getRandomProductsPaginated(pageable);
-        return ResponseEntity.ok(response);
+        ApiResponse<Page<Product>> response = productService.getRandomProductsPaginated(pageable, seed);
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
     }
 
     /**
@@ -168,14 +209,19 @@ public class ProductController {
     @PreAuthorize("hasAuthority('CONSUMER')")
     public ResponseEntity<ApiResponse<Page<Product>>> getRandomProductsForConsumer(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String seed) {
         Pageable pageable = PageRequest.of(page, size);
-        ApiResponse<Page<Product>> response = productService.getRandomProductsPaginated(pageable);
-        return ResponseEntity.ok(response);
+        ApiResponse<Page<Product>> response = productService.getRandomProductsPaginated(pageable, seed);
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
     }
 
     /**
-     * Reset the random ordering (useful for forcing a new shuffle)
+     * Reset the random ordering (useful for forcing a new shuffle), returns the new seed
      */
     @PostMapping("/products/random/reset")
     public ResponseEntity<ApiResponse<String>> resetRandomOrder() {
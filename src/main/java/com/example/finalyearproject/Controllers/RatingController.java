@@ -3,6 +3,9 @@ package com.example.finalyearproject.Controllers;
 import com.example.finalyearproject.DataStore.Rating;
 import com.example.finalyearproject.Services.RatingServices;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
+import com.example.finalyearproject.Utility.RatingEligibilityDTO;
+import com.example.finalyearproject.Utility.ReviewDTO;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -11,7 +14,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Set;
+import java.util.List;
 
 @RestController
 @RequestMapping("/rating")
@@ -97,14 +100,22 @@ public class RatingController {
     }
 
     /**
-     * Get all ratings for a specific product
+     * Get the ratings of a product, sorted newest (default), highest or lowest.
+     * Pass nextCursor back as cursor for the next slice.
      */
     @GetMapping("/products/{productId}")
-    public ResponseEntity<ApiResponse<Set<Rating>>> getProductRatings(@PathVariable int productId) {
-        ApiResponse<Set<Rating>> response = ratingServices.getProductRatings(productId);
+    public ResponseEntity<ApiResponse<CursorPage<ReviewDTO>>> getProductRatings(
+            @PathVariable int productId,
+            @RequestParam(defaultValue = "newest") String sortBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ApiResponse<CursorPage<ReviewDTO>> response =
+                ratingServices.getProductRatings(productId, sortBy, cursor, Math.min(Math.max(size, 1), 100));
 
         if (response.getData() != null) {
             return ResponseEntity.ok(response);
+        } else if ("Invalid cursor".equals(response.getMessage())) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
@@ -115,6 +126,25 @@ public class RatingController {
      */
 
 
+    /**
+     * Check which items of an order can be rated, and the existing ratings of their products
+     */
+    @GetMapping("/can-rate/order/{orderId}")
+    @PreAuthorize("hasAuthority('CONSUMER')")
+    public ResponseEntity<ApiResponse<List<RatingEligibilityDTO>>> getOrderRatingEligibility(
+            @PathVariable int orderId,
+            Authentication authentication) {
+
+        String consumerEmail = authentication.getName();
+        ApiResponse<List<RatingEligibilityDTO>> response = ratingServices.getOrderRatingEligibility(orderId, consumerEmail);
+
+        if (response.getData() != null) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
     /**
      * Check if a specific order item can be rated
      */
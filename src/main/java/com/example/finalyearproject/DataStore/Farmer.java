@@ -65,12 +65,16 @@ public class Farmer implements UserDetails {
     private Set<Product> farmerProducts = new HashSet<>();
 
 
-    // Aggregate rating fields
+    // Aggregate rating fields, only changed by the atomic updates in FarmerRepo and the reconciliation,
+    // so saving the entity never writes back stale aggregates
     @JsonIgnore
+    @Column(updatable = false)
     private Double totalRating = 0.0;
     @JsonIgnore
+    @Column(updatable = false)
     private Integer ratingCount = 0;
     @JsonIgnore
+    @Column(updatable = false)
     private Double averageRating = 0.0;
 
     // UserDetails methods implementation
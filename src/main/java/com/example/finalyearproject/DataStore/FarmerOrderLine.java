@@ -0,0 +1,85 @@
+package com.example.finalyearproject.DataStore;
+
+import com.example.finalyearproject.Utility.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * One order line as seen by the farmer selling it, copied from the order when it is placed.
+ * Serves the farmer inbox from a single index range instead of joining orders, items, products and farmers,
+ * and only ever shows the farmer their own lines. Its status follows the order.
+ */
+@Entity
+@Table(name = "farmer_order_line", indexes = {
+        @Index(name = "idx_farmer_order_line_inbox", columnList = "farmer_id, order_status, placed_at"),
+        @Index(name = "idx_farmer_order_line_order", columnList = "order_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class FarmerOrderLine {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @JsonIgnore
+    @Column(name = "farmer_id", nullable = false)
+    private int farmerId;
+
+    @Column(name = "order_id", nullable = false)
+    private int orderId;
+
+    @Column(name = "order_item_id", nullable = false, unique = true)
+    private int orderItemId;
+
+    private int productId;
+    private String productName;
+    private int quantity;
+
+    // Whole cents, see Money
+    @JsonIgnore
+    private long lineTotalCents;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "order_status", nullable = false)
+    private OrderStatus orderStatus;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "placed_at")
+    private Date placedAt;
+
+    private String consumerName;
+
+    private String shippingAddress;
+    private String shippingCity;
+    private String shippingState;
+    private String shippingZip;
+
+    public FarmerOrderLine(Order order, OrderItem item) {
+        this.farmerId = item.getProduct().getFarmer().getFarmerId();
+        this.orderId = order.getOrderId();
+        this.orderItemId = item.getOrderItemId();
+        this.productId = item.getProductId();
+        this.productName = item.getProductName();
+        this.quantity = item.getQuantity();
+        this.lineTotalCents = item.getUnitPriceCents();
+        this.orderStatus = order.getOrderStatus();
+        this.placedAt = order.getPlacedAt();
+        this.consumerName = order.getConsumer().getConsumerFirstName() + " " + order.getConsumer().getConsumerLastName();
+        this.shippingAddress = order.getShippingAddress();
+        this.shippingCity = order.getShippingCity();
+        this.shippingState = order.getShippingState();
+        this.shippingZip = order.getShippingZip();
+    }
+
+    @JsonProperty("lineTotal")
+    public double getLineTotal() {
+        return Money.toAmount(lineTotalCents);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.finalyearproject.DataStore;
 
+import com.example.finalyearproject.Utility.Money;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -12,7 +15,20 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_consumer_created", columnList = "consumer_id, created_at"))
+// Everything an order response serializes, loaded with the order in one query
+@NamedEntityGraph(
+        name = "Order.withItems",
+        attributeNodes = {
+                @NamedAttributeNode("consumer"),
+                @NamedAttributeNode("deliveryAddress"),
+                @NamedAttributeNode(value = "orderItems", subgraph = "items")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode(value = "product", subgraph = "product")),
+                @NamedSubgraph(name = "product", attributeNodes = @NamedAttributeNode("farmer"))
+        }
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -24,7 +40,10 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus orderStatus = OrderStatus.CREATED;
 
-    private double totalAmount;
+    // Whole cents, see Money
+    @Column(name = "total_amount_cents", nullable = false)
+    @JsonIgnore
+    private long totalAmountCents;
 
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdAt;
@@ -71,10 +90,17 @@ public class Order {
         this.placedAt = new Date();
     }
 
-    // Helper method to recalculate order total
+    // Helper method to recalculate order total, the unit price of an item is the price of its whole line
     public void recalculateTotal() {
-        this.totalAmount = orderItems.stream()
-                .mapToDouble(item -> item.getQuantity() * item.getUnitPrice())
-                .sum();
+        long total = 0;
+        for (OrderItem item : orderItems) {
+            total += item.getUnitPriceCents();
+        }
+        this.totalAmountCents = total;
+    }
+
+    @JsonProperty("totalAmount")
+    public double getTotalAmount() {
+        return Money.toAmount(totalAmountCents);
     }
 }
\ No newline at end of file
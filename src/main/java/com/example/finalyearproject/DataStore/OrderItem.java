@@ -1,6 +1,8 @@
 package com.example.finalyearproject.DataStore;
 
+import com.example.finalyearproject.Utility.Money;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
@@ -24,8 +26,10 @@ public class OrderItem {
     @NotNull(message = "Quantity cannot be null")
     private int quantity; // Changed to camelCase
 
-    @NotNull(message = "UnitPrice cannot be null")
-    private double unitPrice; // Changed to camelCase
+    // Price of the whole line in cents, see Money
+    @Column(name = "unit_price_cents", nullable = false)
+    @JsonIgnore
+    private long unitPriceCents;
 
     @ManyToOne()
     @JsonBackReference("order-items")
@@ -48,6 +52,15 @@ public class OrderItem {
         return product != null ? product.getName() : null;
     }
 
+    @JsonProperty("unitPrice")
+    public double getUnitPrice() {
+        return Money.toAmount(unitPriceCents);
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPriceCents = Money.toCents(unitPrice);
+    }
+
     @ManyToOne
     @JoinColumn(name = "product_id") // explicitly specify join column, if needed.
     @JsonBackReference("order-product")
@@ -1,8 +1,10 @@
 package com.example.finalyearproject.DataStore;
 
+import com.example.finalyearproject.Utility.Money;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -16,6 +18,8 @@ import lombok.Setter;
 import java.time.LocalDate;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 @Entity
@@ -36,15 +40,22 @@ public class Product {
     @Lob
     private String description;
 
-    @NotNull(message = "Price cannot be null")
-    @Positive
-    private double price;
+    // Whole cents, see Money
+    @Positive(message = "Price must be positive")
+    @Column(name = "price_cents", nullable = false)
+    @JsonIgnore
+    private long priceCents;
 
     @NotNull(message = "stock cannot be null")
     @Positive
     @Min(value = 0)
     private int stock;
 
+    // Optimistic lock, also bumped by the conditional stock decrement so a stale edit cannot overwrite stock
+    @Version
+    @JsonIgnore
+    private long version;
+
 
     @JsonIgnore
     private LocalDate harvestDate;
@@ -78,11 +89,53 @@ public class Product {
     @Enumerated(EnumType.STRING)
     private CategoryType category;
 
-    // Aggregate rating fields
+    // Aggregate rating fields, only changed by the atomic updates in ProductRepo and the reconciliation,
+    // so saving the entity never writes back stale aggregates
     @JsonIgnore
+    @Column(updatable = false)
     private Double totalRating = 0.0;
     @JsonIgnore
+    @Column(updatable = false)
     private Integer ratingCount = 0;
     @JsonIgnore
+    @Column(updatable = false)
     private Double averageRating = 0.0;
+
+    // Number of ratings with each score, maintained with the aggregates above
+    @JsonIgnore
+    @Column(updatable = false, nullable = false)
+    private int oneStarCount;
+    @JsonIgnore
+    @Column(updatable = false, nullable = false)
+    private int twoStarCount;
+    @JsonIgnore
+    @Column(updatable = false, nullable = false)
+    private int threeStarCount;
+    @JsonIgnore
+    @Column(updatable = false, nullable = false)
+    private int fourStarCount;
+    @JsonIgnore
+    @Column(updatable = false, nullable = false)
+    private int fiveStarCount;
+
+    // Star -> number of ratings, for the breakdown on the product page
+    @JsonProperty("ratingDistribution")
+    public Map<Integer, Integer> getRatingDistribution() {
+        Map<Integer, Integer> distribution = new LinkedHashMap<>();
+        distribution.put(1, oneStarCount);
+        distribution.put(2, twoStarCount);
+        distribution.put(3, threeStarCount);
+        distribution.put(4, fourStarCount);
+        distribution.put(5, fiveStarCount);
+        return distribution;
+    }
+
+    @JsonProperty("price")
+    public double getPrice() {
+        return Money.toAmount(priceCents);
+    }
+
+    public void setPrice(double price) {
+        this.priceCents = Money.toCents(price);
+    }
 }
@@ -11,6 +11,10 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_rating_product_timestamp", columnList = "product_id, timestamp"),
+        @Index(name = "idx_rating_product_score", columnList = "product_id, score")
+})
 @Getter
 @Setter
 @NoArgsConstructor
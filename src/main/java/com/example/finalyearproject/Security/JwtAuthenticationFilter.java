@@ -19,8 +19,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -40,13 +38,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String requestHeader = request.getHeader("Authorization");
         logger.debug("Authorization Header: {}", requestHeader);
 
-        String userName = null;
-        String token = null;
+        VerifiedJwt jwt = null;
 
         if (requestHeader != null && requestHeader.startsWith("Bearer")) {
-            token = requestHeader.substring(7);
+            String token = requestHeader.substring(7);
             try {
-                userName = this.jwtHelper.getUsernameFromToken(token);
+                // Verified once here, or taken from the cache, and the claims are reused below
+                jwt = this.jwtHelper.verify(token);
             } catch (IllegalArgumentException e) {
                 logger.error("Illegal Argument while fetching the username", e);
             } catch (ExpiredJwtException e) {
@@ -60,20 +58,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             logger.debug("JWT Token does not begin with Bearer String");
         }
 
-        if (userName != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        if (jwt != null && jwt.username() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String userName = jwt.username();
             UserDetails userDetails = this.userDetailsService.loadUserByUsername(userName);
 
-            if (this.jwtHelper.validateToken(token, userDetails)) {
+            if (this.jwtHelper.validateToken(jwt, userDetails)) {
                 // Get authorities from token
-                String authoritiesStr = jwtHelper.getClaimFromToken(token, claims ->
-                        claims.get("authorities", String.class));
-
-                List<SimpleGrantedAuthority> authorities = Collections.emptyList();
-                if (authoritiesStr != null && !authoritiesStr.isEmpty()) {
-                    authorities = Arrays.stream(authoritiesStr.split(","))
-                            .map(SimpleGrantedAuthority::new)
-                            .collect(Collectors.toList());
-                }
+                List<SimpleGrantedAuthority> authorities = jwt.authorities().stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList());
 
                 // Create authentication token with authorities
                 UsernamePasswordAuthenticationToken authentication =
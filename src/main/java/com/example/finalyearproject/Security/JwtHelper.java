@@ -1,17 +1,23 @@
 package com.example.finalyearproject.Security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,18 +29,80 @@ public class JwtHelper {
 
     private final String secret = "afafasfafafasfasfasfafacasdasfasxASFACASDFACASDFASFASFDAFASFASDAADSCSDFADCVSGCFVADXCcadwavfsfarvf";
 
+    // Built once, the secret is Base64 like setSigningKey(String) always treated it, so issued tokens stay valid
+    private final SecretKey signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+
+    // Immutable and thread safe
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+    // SHA-256 of the token -> its verified claims, until the token expires
+    private final Map<String, VerifiedJwt> verified = new ConcurrentHashMap<>();
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int maxCachedTokens;
+
+    /**
+     * Verify the token and return its claims. The signature is only checked the first time a token is seen,
+     * later calls are served from the cache until the token expires.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+     */
+    public VerifiedJwt verify(String token) {
+        String key = hash(token);
+        VerifiedJwt jwt = verified.get(key);
+        if (jwt != null && !jwt.isExpired()) {
+            return jwt;
+        }
+        if (jwt != null) {
+            verified.remove(key, jwt); // Parsing below reports the expiry
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        String authorities = claims.get("authorities", String.class);
+        jwt = new VerifiedJwt(
+                claims.getSubject(),
+                authorities == null || authorities.isEmpty() ? List.of() : Arrays.asList(authorities.split(",")),
+                claims.get("role", String.class),
+                claims.getExpiration());
+
+        // When full, verify this token again next time rather than grow past the bound or sweep on the request
+        // thread, the scheduled sweep frees the space of expired tokens
+        if (verified.size() < maxCachedTokens) {
+            verified.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        verified.values().removeIf(VerifiedJwt::isExpired);
+    }
+
+    int cachedTokens() {
+        return verified.size();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     //retrieve username from jwt token
     public String getUsernameFromToken(String token) {
-        return getClaimFromToken(token, Claims::getSubject);
+        return verify(token).username();
     }
 
     public SecretKey generateKey(){
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
     }
 
     //retrieve expiration date from jwt token
     public Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
+        return verify(token).expiration();
     }
 
     public <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
@@ -44,13 +112,7 @@ public class JwtHelper {
 
     //for retrieving any information from token we will need the secret key
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
-    }
-
-    //check if the token has expired
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     //generate token for user
@@ -79,13 +141,16 @@ public class JwtHelper {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY * 1000))
-                .signWith(SignatureAlgorithm.HS512, secret)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
     //validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = getUsernameFromToken(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateToken(verify(token), userDetails);
+    }
+
+    public boolean validateToken(VerifiedJwt jwt, UserDetails userDetails) {
+        return jwt.username().equals(userDetails.getUsername()) && !jwt.isExpired();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.example.finalyearproject.Security;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The claims of a token whose signature has been verified, parsed once and shared by every use of the token
+ *
+ * @param authorities unmodifiable
+ */
+public record VerifiedJwt(String username, List<String> authorities, String role, Date expiration) {
+
+    public VerifiedJwt {
+        authorities = List.copyOf(authorities);
+        expiration = new Date(expiration.getTime());
+    }
+
+    @Override
+    public Date expiration() {
+        return new Date(expiration.getTime());
+    }
+
+    public boolean isExpired() {
+        return expiration.getTime() <= System.currentTimeMillis();
+    }
+}
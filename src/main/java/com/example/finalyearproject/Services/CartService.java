@@ -1,37 +1,31 @@
 package com.example.finalyearproject.Services;
 
-import com.example.finalyearproject.Abstraction.ConsumerRepo;
-import com.example.finalyearproject.Abstraction.OrderItemRepo;
-import com.example.finalyearproject.Abstraction.OrderRepo;
 import com.example.finalyearproject.Abstraction.ProductRepo;
 import com.example.finalyearproject.DataStore.*;
-import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
     @Autowired
-    private OrderItemRepo orderItemRepo;
+    private ProductCache productCache;
 
     @Autowired
-    private ConsumerRepo consumerRepo;
-
+    private CartStore cartStore;
 
     @Autowired
-    private ProductRepo productRepo;
+    private StockReservations stockReservations;
 
     @Autowired
-    private OrderRepo orderRepo;
+    private ProductRepo productRepo;
 
     private static final Logger logger = LoggerFactory.getLogger(CartService.class);
 
@@ -39,7 +33,6 @@ public class CartService {
     /**
      * Add product to cart
      */
-    @Transactional
     public ApiResponse<Set<OrderItem>> addToCart(int consumerId, int productId, int quantity) {
         try {
             // Validation
@@ -47,139 +40,172 @@ public class CartService {
                 return ApiResponse.error("Invalid quantity", "Quantity must be greater than zero");
             }
 
-            // Get consumer
-            Consumer consumer = consumerRepo.findById(consumerId).orElse(null);
-            if (consumer == null) {
-                return ApiResponse.error("Consumer not found", "No consumer found with ID: " + consumerId);
-            }
-
-            // Get product
-            Product product = productRepo.findById(productId).orElse(null);
+            // Get product, cached and detached, it is only read here
+            Product product = productCache.get(productId).orElse(null);
             if (product == null) {
                 return ApiResponse.error("Product not found", "No product found with ID: " + productId);
             }
 
-            // Check stock
-            if (product.getStock() < quantity) {
-                return ApiResponse.error("Insufficient stock",
-                        "Requested quantity (" + quantity + ") exceeds available stock (" + product.getStock() + ")");
-            }
-
-            // Find or create cart
-            Order cart = orderRepo.findActiveCartByConsumerId(consumerId);
-            if (cart == null) {
-                cart = new Order();
-                cart.setConsumer(consumer);
-                cart.setOrderStatus(OrderStatus.CREATED);
-                cart.setTotalAmount(0);
-                cart.setOrderItems(new HashSet<>());
-                cart = orderRepo.save(cart);
-            }
+            // The cart lives in the cart store, it is persisted in the background
+            return cartStore.update(consumerId, cart -> {
+                CartState.Line existingItem = cart.getLine(productId);
+                int newQuantity = existingItem != null ? existingItem.getQuantity() + quantity : quantity;
+
+                // Hold the stock for this cart, units held by other carts are not available
+                if (!stockReservations.reserve(productId, consumerId, newQuantity, product::getStock)) {
+                    int available = stockReservations.available(productId, consumerId, product::getStock);
+                    if (existingItem != null) {
+                        return ApiResponse.<Set<OrderItem>>error("Insufficient stock",
+                                "Cannot add " + quantity + " more units. Available: " + available +
+                                        ", already in cart: " + existingItem.getQuantity());
+                    }
+                    return ApiResponse.<Set<OrderItem>>error("Insufficient stock",
+                            "Requested quantity (" + quantity + ") exceeds available stock (" + available + ")");
+                }
 
-            // Check if product already in cart
-            OrderItem existingItem = null;
-            for (OrderItem item : cart.getOrderItems()) {
-                if (item.getProduct().getProductId() == productId) {
-                    existingItem = item;
-                    break;
+                if (existingItem != null) {
+                    // Update existing item
+                    existingItem.setQuantity(newQuantity);
+                    existingItem.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), newQuantity));
+                } else {
+                    // Create new item
+                    CartState.Line newItem = cartStore.addLine(cart, productId);
+                    newItem.setProductName(product.getName());
+                    newItem.setQuantity(quantity);
+                    newItem.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), quantity));
                 }
-            }
 
-            if (existingItem != null) {
-                // Update existing item
-                int newQuantity = existingItem.getQuantity() + quantity;
+                return ApiResponse.success("Item added to cart", cart.toOrderItems());
+            });
+        } catch (Exception e) {
+            logger.error("Failed to add to cart: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to add to cart", e.getMessage());
+        }
+    }
 
-                // Recheck stock with new total
-                if (product.getStock() < newQuantity) {
-                    return ApiResponse.error("Insufficient stock",
-                            "Cannot add " + quantity + " more units. Available: " + product.getStock() +
-                                    ", already in cart: " + existingItem.getQuantity());
+    /**
+     * Apply a batch of add/remove/set-quantity operations to the cart, all of them or none.
+     * The referenced products are loaded with one query and the cart changes under a single lock,
+     * so the next flush writes all changed lines in one transaction.
+     */
+    public ApiResponse<Set<OrderItem>> applyBatch(int consumerId, List<CartOperationDTO> operations) {
+        try {
+            Set<Integer> productIds = operations.stream()
+                    .map(CartOperationDTO::getProductId)
+                    .collect(Collectors.toSet());
+            Map<Integer, ProductSummaryDTO> products = productRepo.findSummariesByIds(productIds).stream()
+                    .collect(Collectors.toMap(ProductSummaryDTO::getProductId, Function.identity()));
+            for (Integer productId : productIds) {
+                if (!products.containsKey(productId)) {
+                    return ApiResponse.error("Product not found", "No product found with ID: " + productId);
                 }
+            }
 
-                existingItem.setQuantity(newQuantity);
-                existingItem.setUnitPrice(BigDecimal.valueOf(product.getPrice())
-                        .multiply(BigDecimal.valueOf(newQuantity))
-                        .setScale(2, RoundingMode.HALF_UP)
-                        .doubleValue());
-                orderItemRepo.save(existingItem);
-            } else {
-                // Create new item
-                OrderItem newItem = new OrderItem();
-                newItem.setProduct(product);
-                newItem.setQuantity(quantity);
-                newItem.setUnitPrice(BigDecimal.valueOf(product.getPrice())
-                        .multiply(BigDecimal.valueOf(quantity))
-                        .setScale(2, RoundingMode.HALF_UP)
-                        .doubleValue());
-                newItem.setOrder(cart);
-
-                // Add to product's order items if needed
-                if (product.getOrderItems() == null) {
-                    product.setOrderItems(new HashSet<>());
+            return cartStore.update(consumerId, cart -> {
+                // Final quantity of every product the batch touches, in the order they first appear
+                Map<Integer, Integer> quantities = new LinkedHashMap<>();
+                for (CartOperationDTO operation : operations) {
+                    CartState.Line line = cart.getLine(operation.getProductId());
+                    int current = quantities.getOrDefault(operation.getProductId(), line != null ? line.getQuantity() : 0);
+                    int next = switch (operation.getType()) {
+                        case ADD -> current + operation.getQuantity();
+                        case REMOVE -> Math.max(0, current - operation.getQuantity());
+                        case SET -> operation.getQuantity();
+                    };
+                    quantities.put(operation.getProductId(), next);
                 }
-                product.getOrderItems().add(newItem);
 
-                // Add to cart
-                cart.getOrderItems().add(newItem);
-                orderItemRepo.save(newItem);
-            }
+                // Hold the stock of every increase, giving back the holds already taken if one cannot be served
+                List<Integer> raised = new ArrayList<>();
+                for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                    int productId = entry.getKey();
+                    ProductSummaryDTO product = products.get(productId);
+                    if (entry.getValue() <= quantityInCart(cart, productId)) {
+                        continue;
+                    }
+                    if (!stockReservations.reserve(productId, consumerId, entry.getValue(), product::getStock)) {
+                        for (Integer heldId : raised) {
+                            stockReservations.reduce(heldId, consumerId, quantityInCart(cart, heldId));
+                        }
+                        int available = stockReservations.available(productId, consumerId, product::getStock);
+                        return ApiResponse.<Set<OrderItem>>error("Insufficient stock",
+                                "Requested quantity (" + entry.getValue() + ") of " + product.getName() +
+                                        " exceeds available stock (" + available + ")");
+                    }
+                    raised.add(productId);
+                }
 
-            // Update cart total
-            cart.setTotalAmount(cart.getOrderItems().stream()
-                    .mapToDouble(OrderItem::getUnitPrice)
-                    .sum());
-            orderRepo.save(cart);
+                for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                    int productId = entry.getKey();
+                    int quantity = entry.getValue();
+                    ProductSummaryDTO product = products.get(productId);
+                    CartState.Line line = cart.getLine(productId);
+
+                    if (quantity == 0) {
+                        if (line != null) {
+                            cart.removeLine(productId);
+                            stockReservations.release(productId, consumerId);
+                        }
+                    } else if (line == null) {
+                        CartState.Line newItem = cartStore.addLine(cart, productId);
+                        newItem.setProductName(product.getName());
+                        newItem.setQuantity(quantity);
+                        newItem.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), quantity));
+                    } else if (quantity != line.getQuantity()) {
+                        if (quantity < line.getQuantity()) {
+                            stockReservations.reduce(productId, consumerId, quantity);
+                        }
+                        line.setProductName(product.getName());
+                        line.setQuantity(quantity);
+                        line.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), quantity));
+                    }
+                }
 
-            return ApiResponse.success("Item added to cart", cart.getOrderItems());
+                return ApiResponse.success("Cart updated", cart.toOrderItems());
+            });
         } catch (Exception e) {
-            logger.error("Failed to add to cart: {}", e.getMessage(), e);
-            return ApiResponse.error("Failed to add to cart", e.getMessage());
+            logger.error("Failed to apply cart operations: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to update cart", e.getMessage());
         }
     }
 
+    private static int quantityInCart(CartState cart, int productId) {
+        CartState.Line line = cart.getLine(productId);
+        return line != null ? line.getQuantity() : 0;
+    }
+
     /**
-     * Remove from cart
+     * Remove product from cart
      */
-    @Transactional
     public ApiResponse<Set<OrderItem>> removeFromCart(int consumerId, int orderItemId, int quantity) {
         try {
-            // Find order item in active cart
-            OrderItem orderItem = orderItemRepo.findOrderItemWithStatusCREATED(consumerId, orderItemId);
-            if (orderItem == null) {
-                return ApiResponse.error("Item not found", "No item found in your active cart");
-            }
-
-            Order cart = orderItem.getOrder();
-
-            // Remove item completely or reduce quantity
-            if (quantity >= orderItem.getQuantity()) {
-                // Remove entire item
-                cart.getOrderItems().remove(orderItem);
-                if (orderItem.getProduct() != null && orderItem.getProduct().getOrderItems() != null) {
-                    orderItem.getProduct().getOrderItems().remove(orderItem);
+            return cartStore.update(consumerId, cart -> {
+                // Find order item in active cart
+                CartState.Line orderItem = cart.findLineById(orderItemId);
+                if (orderItem == null) {
+                    return ApiResponse.<Set<OrderItem>>error("Item not found", "No item found in your active cart");
                 }
-                orderItemRepo.delete(orderItem);
-            } else {
-                // Reduce quantity
-                int newQuantity = orderItem.getQuantity() - quantity;
-                double pricePerUnit = orderItem.getUnitPrice() / orderItem.getQuantity();
-                orderItem.setQuantity(newQuantity);
-                orderItem.setUnitPrice(BigDecimal.valueOf(pricePerUnit)
-                        .multiply(BigDecimal.valueOf(newQuantity))
-                        .setScale(2, RoundingMode.HALF_UP)
-                        .doubleValue());
-                orderItemRepo.save(orderItem);
-            }
 
-            // Recalculate cart total
-            cart.setTotalAmount(cart.getOrderItems().stream()
-                    .mapToDouble(OrderItem::getUnitPrice)
-                    .sum());
-            orderRepo.save(cart);
+                boolean removeAll = quantity >= orderItem.getQuantity();
+
+                // Remove item completely or reduce quantity
+                if (removeAll) {
+                    // Remove entire item
+                    cart.removeLine(orderItem.getProductId());
+                    stockReservations.release(orderItem.getProductId(), consumerId);
+                } else {
+                    // Reduce quantity
+                    int newQuantity = orderItem.getQuantity() - quantity;
+                    long unitCents = orderItem.getUnitPriceCents() / orderItem.getQuantity();
+                    orderItem.setQuantity(newQuantity);
+                    orderItem.setUnitPriceCents(Money.lineTotal(unitCents, newQuantity));
+                    stockReservations.reduce(orderItem.getProductId(), consumerId, newQuantity);
+                }
 
-            return ApiResponse.success(
-                    quantity >= orderItem.getQuantity() ? "Item removed from cart" : "Item quantity reduced",
-                    cart.getOrderItems());
+                return ApiResponse.success(
+                        removeAll ? "Item removed from cart" : "Item quantity reduced",
+                        cart.toOrderItems());
+            });
         } catch (Exception e) {
             logger.error("Failed to remove from cart: {}", e.getMessage(), e);
             return ApiResponse.error("Failed to remove from cart", e.getMessage());
@@ -191,7 +217,7 @@ public class CartService {
      */
     public ApiResponse<Order> getCart(int consumerId) {
         try {
-            Order cart = orderRepo.findActiveCartByConsumerId(consumerId);
+            Order cart = cartStore.read(consumerId, state -> state.isEmpty() && state.getOrderId() == 0 ? null : state.toOrder());
             if (cart == null) {
                 return ApiResponse.success("Cart is empty", null);
             }
@@ -205,22 +231,19 @@ public class CartService {
     /**
      * Clear change notifications
      */
-    @Transactional
     public ApiResponse<Set<OrderItem>> acknowledgeChanges(int consumerId) {
         try {
-            Order cart = orderRepo.findActiveCartByConsumerId(consumerId);
-            if (cart == null || cart.getOrderItems().isEmpty()) {
-                return ApiResponse.success("No items in cart", new HashSet<>());
-            }
+            return cartStore.update(consumerId, cart -> {
+                if (cart.isEmpty()) {
+                    return ApiResponse.success("No items in cart", new HashSet<OrderItem>());
+                }
 
-            for (OrderItem item : cart.getOrderItems()) {
-                if (item.getFieldChange() != null) {
+                for (CartState.Line item : cart.getLines()) {
                     item.setFieldChange(null);
-                    orderItemRepo.save(item);
                 }
-            }
 
-            return ApiResponse.success("Changes acknowledged", cart.getOrderItems());
+                return ApiResponse.success("Changes acknowledged", cart.toOrderItems());
+            });
         } catch (Exception e) {
             logger.error("Failed to acknowledge changes: {}", e.getMessage(), e);
             return ApiResponse.error("Failed to acknowledge changes", e.getMessage());
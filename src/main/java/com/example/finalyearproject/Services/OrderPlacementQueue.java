@@ -0,0 +1,180 @@
+package com.example.finalyearproject.Services;
+
+import com.example.finalyearproject.DataStore.Order;
+import com.example.finalyearproject.Utility.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous order placement.
+ * Requests are validated and queued, and a small fixed pool of workers drains the queue, placing up to
+ * batch-size orders per transaction (group commit). During a sale spike placement uses at most one
+ * connection per worker instead of one per request thread, and clients poll their ticket for the result.
+ */
+@Service
+public class OrderPlacementQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPlacementQueue.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Value("${order.placement.workers:4}")
+    private int workers;
+
+    @Value("${order.placement.batch-size:20}")
+    private int batchSize;
+
+    @Value("${order.placement.queue-capacity:5000}")
+    private int queueCapacity;
+
+    // Finished tickets are kept this long for polling
+    @Value("${order.placement.result-ttl-ms:600000}")
+    private long resultTtlMs;
+
+    private BlockingQueue<PlacementTicket> queue;
+
+    private final Map<String, PlacementTicket> tickets = new ConcurrentHashMap<>();
+
+    // At most one queued placement per consumer, so a group never holds the same cart twice
+    private final Map<Integer, PlacementTicket> pendingByConsumer = new ConcurrentHashMap<>();
+
+    private ExecutorService workerPool;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "order-placement-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+    }
+
+    /**
+     * Stop taking requests and let the workers place what is already queued
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(30, TimeUnit.SECONDS)) {
+            logger.warn("Order placement queue stopped with {} orders still queued", queue.size());
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue the placement of the consumer's cart
+     */
+    public ApiResponse<PlacementTicket> enqueue(int consumerId, OrderPlacementDTO placementDTO) {
+        if (!running) {
+            return ApiResponse.error("Order queue unavailable", "The server is shutting down, please try again shortly");
+        }
+        if (cartStore.read(consumerId, CartState::isEmpty)) {
+            return ApiResponse.error("Empty cart", "Your cart is empty");
+        }
+
+        PlacementTicket ticket = new PlacementTicket(consumerId, placementDTO);
+        PlacementTicket pending = pendingByConsumer.putIfAbsent(consumerId, ticket);
+        if (pending != null) {
+            return ApiResponse.success("Order already queued for placement", pending);
+        }
+
+        tickets.put(ticket.getTicketId(), ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.getTicketId());
+            pendingByConsumer.remove(consumerId, ticket);
+            return ApiResponse.error("Order queue full", "Too many orders are being placed, please try again shortly");
+        }
+        return ApiResponse.success("Order queued for placement", ticket);
+    }
+
+    /**
+     * The consumer's ticket, null when unknown, expired or owned by someone else
+     */
+    public PlacementTicket getTicket(String ticketId, int consumerId) {
+        PlacementTicket ticket = tickets.get(ticketId);
+        return ticket != null && ticket.getConsumerId() == consumerId ? ticket : null;
+    }
+
+    private void work() {
+        List<PlacementTicket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PlacementTicket first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                placeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Order placement worker failed: {}", e.getMessage(), e);
+                for (PlacementTicket ticket : batch) {
+                    if (!ticket.isDone()) {
+                        complete(ticket, ApiResponse.error("Failed to place order", e.getMessage()));
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void placeBatch(List<PlacementTicket> batch) {
+        Map<Integer, OrderPlacementDTO> placements = new LinkedHashMap<>();
+        for (PlacementTicket ticket : batch) {
+            placements.put(ticket.getConsumerId(), ticket.getPlacementDTO());
+        }
+
+        Map<Integer, ApiResponse<Order>> results;
+        try {
+            results = orderService.placeOrders(placements);
+        } catch (Exception e) {
+            // Rolled back as a whole, place the orders one by one so a single bad order fails alone
+            logger.warn("Group placement of {} orders failed, placing them individually: {}", batch.size(), e.getMessage());
+            results = new HashMap<>();
+            for (PlacementTicket ticket : batch) {
+                results.put(ticket.getConsumerId(), orderService.placeOrder(ticket.getConsumerId(), ticket.getPlacementDTO()));
+            }
+        }
+
+        for (PlacementTicket ticket : batch) {
+            ApiResponse<Order> result = results.get(ticket.getConsumerId());
+            complete(ticket, result != null ? result : ApiResponse.error("Failed to place order", "No result for this order"));
+        }
+    }
+
+    private void complete(PlacementTicket ticket, ApiResponse<Order> result) {
+        ticket.complete(result);
+        pendingByConsumer.remove(ticket.getConsumerId(), ticket);
+    }
+
+    @Scheduled(fixedDelayString = "${order.placement.result-ttl-ms:600000}")
+    public void evictFinishedTickets() {
+        long cutoff = System.currentTimeMillis() - resultTtlMs;
+        tickets.values().removeIf(ticket -> ticket.isDone() && ticket.getCompletedAt() < cutoff);
+    }
+}
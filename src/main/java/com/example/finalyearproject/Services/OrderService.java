@@ -3,19 +3,30 @@ package com.example.finalyearproject.Services;
 import com.example.finalyearproject.Abstraction.*;
 import com.example.finalyearproject.DataStore.*;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CartStore;
+import com.example.finalyearproject.Utility.CursorPage;
+import com.example.finalyearproject.Utility.Money;
+import com.example.finalyearproject.Utility.OrderHistoryCursor;
 import com.example.finalyearproject.Utility.OrderPlacementDTO;
+import com.example.finalyearproject.Utility.OrderSummaryDTO;
+import com.example.finalyearproject.Utility.ProductChangedEvent;
+import com.example.finalyearproject.Utility.StockReservations;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,100 +44,228 @@ public class OrderService {
     @Autowired
     private FarmerRepo farmerRepo;
 
+    @Autowired
+    private FarmerOrderLineRepo farmerOrderLineRepo;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    @Autowired
+    private EntityManager entityManager;
+
     /**
-     * Place order and reduce product stock
-     * Uses higher isolation level to prevent overselling
+     * Place order and reduce product stock.
+     * The cart's stock holds are renewed first, so an order cannot take units held for other carts.
+     * Each product is decremented with a conditional update that only succeeds while enough stock is left,
+     * so READ COMMITTED is enough to prevent overselling.
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public ApiResponse<Order> placeOrder(int consumerId, OrderPlacementDTO placementDTO) {
         try {
-            // Get active cart
-            Order cart = orderRepo.findActiveCartByConsumerId(consumerId);
+            Map<Integer, OrderPlacementDTO> placement = new LinkedHashMap<>();
+            placement.put(consumerId, placementDTO);
+            return placeAll(placement).get(consumerId);
+        } catch (Exception e) {
+            logger.error("Failed to place order: {}", e.getMessage(), e);
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return ApiResponse.error("Failed to place order", e.getMessage());
+        }
+    }
+
+    /**
+     * Place the orders of several consumers in one transaction (group commit), each with its own result.
+     * An exception rolls back the whole group, the caller then has to place the orders one by one.
+     *
+     * @return consumerId -> result
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public Map<Integer, ApiResponse<Order>> placeOrders(Map<Integer, OrderPlacementDTO> placements) {
+        return placeAll(placements);
+    }
+
+    private record StockLine(int consumerId, OrderItem item) {
+    }
+
+    private Map<Integer, ApiResponse<Order>> placeAll(Map<Integer, OrderPlacementDTO> placements) {
+        Map<Integer, ApiResponse<Order>> results = new LinkedHashMap<>();
+
+        // Get the active carts from the cart store, persisted as part of this transaction, and renew their holds
+        Map<Integer, Order> carts = new LinkedHashMap<>();
+        for (Integer consumerId : placements.keySet()) {
+            Order cart = cartStore.persistForCheckout(consumerId);
             if (cart == null || cart.getOrderItems().isEmpty()) {
-                return ApiResponse.error("Empty cart", "Your cart is empty");
+                results.put(consumerId, ApiResponse.error("Empty cart", "Your cart is empty"));
+                continue;
             }
 
-            // Check if all items are still in stock
-            StringBuilder stockErrors = new StringBuilder();
-            boolean hasStockError = false;
-
+            // Only a hold that expired can fail here
+            List<OrderItem> unheld = new ArrayList<>();
             for (OrderItem item : cart.getOrderItems()) {
-                // Reload product to get latest stock
-                Product product = productRepo.findById(item.getProduct().getProductId()).orElse(null);
-                if (product == null) {
-                    stockErrors.append("Product ").append(item.getProduct().getName())
-                            .append(" is no longer available. ");
-                    hasStockError = true;
-                    continue;
-                }
-
-                if (product.getStock() < item.getQuantity()) {
-                    stockErrors.append("Only ").append(product.getStock())
-                            .append(" units available for ").append(product.getName())
-                            .append(" (requested: ").append(item.getQuantity()).append("). ");
-                    hasStockError = true;
+                if (!stockReservations.reserve(item.getProductId(), consumerId, item.getQuantity(),
+                        () -> item.getProduct().getStock())) {
+                    unheld.add(item);
                 }
             }
-
-            if (hasStockError) {
-                return ApiResponse.error("Insufficient stock", stockErrors.toString());
+            if (!unheld.isEmpty()) {
+                results.put(consumerId, ApiResponse.error("Insufficient stock", describeHoldErrors(consumerId, unheld)));
+                continue;
             }
+            carts.put(consumerId, cart);
+        }
 
-            // Set shipping information
-            if (placementDTO != null) {
-                cart.setShippingAddress(placementDTO.getShippingAddress());
-                cart.setShippingCity(placementDTO.getShippingCity());
-                cart.setShippingState(placementDTO.getShippingState());
-                cart.setShippingZip(placementDTO.getShippingZip());
+        // Take the stock of all orders in productId order, so concurrent placements lock the rows in the same
+        // order and cannot deadlock. The conditional update stays the final guard against overselling.
+        List<StockLine> lines = new ArrayList<>();
+        carts.forEach((consumerId, cart) -> cart.getOrderItems().forEach(item -> lines.add(new StockLine(consumerId, item))));
+        lines.sort(Comparator.comparingInt(line -> line.item().getProductId()));
+
+        Set<OrderItem> taken = new HashSet<>();
+        Map<Integer, List<OrderItem>> outOfStock = new HashMap<>();
+        for (StockLine line : lines) {
+            if (productRepo.decrementStock(line.item().getProductId(), line.item().getQuantity()) > 0) {
+                taken.add(line.item());
+            } else {
+                outOfStock.computeIfAbsent(line.consumerId(), id -> new ArrayList<>()).add(line.item());
             }
+        }
 
-            // Update stock for each product
-            for (OrderItem item : cart.getOrderItems()) {
-                Product product = item.getProduct();
-                int newStock = product.getStock() - item.getQuantity();
-                product.setStock(newStock);
-                productRepo.save(product);
+        carts.forEach((consumerId, cart) -> {
+            List<OrderItem> missing = outOfStock.get(consumerId);
+            if (missing != null) {
+                // Give back the stock already taken by this order, the rows are locked by this transaction already
+                for (OrderItem item : cart.getOrderItems()) {
+                    if (taken.contains(item)) {
+                        productRepo.incrementStock(item.getProductId(), item.getQuantity());
+                    }
+                }
+                results.put(consumerId, ApiResponse.error("Insufficient stock", describeStockErrors(missing)));
+                return;
             }
+            results.put(consumerId, ApiResponse.success("Order placed successfully",
+                    completeOrder(consumerId, cart, placements.get(consumerId))));
+        });
+        return results;
+    }
+
+    private Order completeOrder(int consumerId, Order cart, OrderPlacementDTO placementDTO) {
+        // Set shipping information
+        if (placementDTO != null) {
+            cart.setShippingAddress(placementDTO.getShippingAddress());
+            cart.setShippingCity(placementDTO.getShippingCity());
+            cart.setShippingState(placementDTO.getShippingState());
+            cart.setShippingZip(placementDTO.getShippingZip());
+        }
 
-            // Update order status
-            cart.place(); // Sets status to PLACED and timestamps
-            Order placedOrder = orderRepo.save(cart);
+        // The bulk updates bypassed the persistence context, reload the new stock and version
+        List<Product> soldProducts = new ArrayList<>();
+        for (OrderItem item : cart.getOrderItems()) {
+            Product product = item.getProduct();
+            entityManager.refresh(product);
+            // Charge the price of the row this order just locked, the cart may still carry a price from
+            // before an edit that reached it late or not at all
+            item.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), item.getQuantity()));
+            soldProducts.add(product);
+            eventPublisher.publishEvent(ProductChangedEvent.saved(product));
+        }
+        cart.recalculateTotal();
+        stockReservations.convertAfterCommit(consumerId, soldProducts);
 
-            return ApiResponse.success("Order placed successfully", placedOrder);
-        } catch (Exception e) {
-            logger.error("Failed to place order: {}", e.getMessage(), e);
-            return ApiResponse.error("Failed to place order", e.getMessage());
+        // Update order status
+        cart.place(); // Sets status to PLACED and timestamps
+        Order placed = orderRepo.save(cart);
+
+        // Each farmer's copy of their lines, committed with the order
+        List<FarmerOrderLine> farmerLines = new ArrayList<>();
+        for (OrderItem item : placed.getOrderItems()) {
+            farmerLines.add(new FarmerOrderLine(placed, item));
+        }
+        farmerOrderLineRepo.saveAll(farmerLines);
+        return placed;
+    }
+
+    private String describeHoldErrors(int consumerId, List<OrderItem> unheld) {
+        StringBuilder stockErrors = new StringBuilder();
+        for (OrderItem item : unheld) {
+            int available = stockReservations.available(item.getProductId(), consumerId,
+                    () -> item.getProduct().getStock());
+            stockErrors.append("Only ").append(available)
+                    .append(" units available for ").append(item.getProductName())
+                    .append(" (requested: ").append(item.getQuantity()).append("). ");
         }
+        return stockErrors.toString();
+    }
+
+    private String describeStockErrors(List<OrderItem> outOfStock) {
+        StringBuilder stockErrors = new StringBuilder();
+        for (OrderItem item : outOfStock) {
+            Product product = productRepo.findById(item.getProductId()).orElse(null);
+            if (product == null) {
+                stockErrors.append("Product ").append(item.getProductName())
+                        .append(" is no longer available. ");
+                continue;
+            }
+            entityManager.refresh(product);
+            stockErrors.append("Only ").append(product.getStock())
+                    .append(" units available for ").append(product.getName())
+                    .append(" (requested: ").append(item.getQuantity()).append("). ");
+        }
+        return stockErrors.toString();
     }
 
     /**
-     * Get order history for a consumer
+     * Get a slice of a consumer's order history, newest first, as summaries.
+     * Seeks past the last returned order instead of using an offset; the full order is fetched with getOrderById.
      */
-    public List<Order> getOrderHistory(int consumerId) {
-        return orderRepo.findByConsumer_ConsumerIdOrderByCreatedAtDesc(consumerId);
+    public ApiResponse<CursorPage<OrderSummaryDTO>> getOrderHistory(int consumerId, String cursor, int size) {
+        try {
+            OrderHistoryCursor.Position position;
+            try {
+                position = OrderHistoryCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error("Invalid cursor", e.getMessage());
+            }
+
+            // One extra row tells whether there is a next slice
+            Pageable limit = PageRequest.of(0, size + 1);
+            List<OrderSummaryDTO> summaries = position == null
+                    ? orderRepo.findSummariesByConsumerId(consumerId, limit)
+                    : orderRepo.findSummariesByConsumerIdBefore(consumerId, position.createdAt(), position.orderId(), limit);
+
+            boolean hasNext = summaries.size() > size;
+            List<OrderSummaryDTO> content = hasNext ? summaries.subList(0, size) : summaries;
+            String nextCursor = hasNext ? OrderHistoryCursor.encode(content.get(content.size() - 1)) : null;
+            return ApiResponse.success("Order history retrieved", new CursorPage<>(content, nextCursor, hasNext, null));
+        } catch (Exception e) {
+            logger.error("Failed to retrieve order history: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to retrieve order history", e.getMessage());
+        }
     }
 
     /**
      * Get order by ID
      */
     public Order getOrderById(int orderId) {
-        return orderRepo.findById(orderId).orElse(null);
+        return orderRepo.findWithItemsByOrderId(orderId).orElse(null);
     }
 
     @Transactional
     public ApiResponse<Order> markOrderDelivered(int orderId, String farmerEmail) {
         try {
-            Order order = orderRepo.findById(orderId).orElse(null);
-            if (order == null) {
-                return ApiResponse.error("Update failed", "Order not found");
+            if (!isFarmerOrder(orderId, farmerEmail)) {
+                return orderRepo.existsById(orderId)
+                        ? ApiResponse.error("Update failed", "Unauthorized to update this order")
+                        : ApiResponse.error("Update failed", "Order not found");
             }
 
-            // Simple check if any product in the order belongs to this farmer
-            boolean hasProductFromFarmer = order.getOrderItems().stream()
-                    .anyMatch(item -> item.getProduct().getFarmer().getFarmerEmail().equalsIgnoreCase(farmerEmail));
-
-            if (!hasProductFromFarmer) {
-                return ApiResponse.error("Update failed", "Unauthorized to update this order");
+            Order order = orderRepo.findWithItemsByOrderId(orderId).orElse(null);
+            if (order == null) {
+                return ApiResponse.error("Update failed", "Order not found");
             }
 
             // Only allow updating PLACED orders
@@ -136,6 +275,7 @@ public class OrderService {
 
             order.setOrderStatus(OrderStatus.DELIVERED);
             Order updatedOrder = orderRepo.save(order);
+            farmerOrderLineRepo.updateStatusByOrderId(orderId, OrderStatus.DELIVERED);
 
             return ApiResponse.success("Order marked as delivered", updatedOrder);
         } catch (Exception e) {
@@ -147,7 +287,7 @@ public class OrderService {
     @Transactional
     public ApiResponse<Order> confirmOrderReceipt(int orderId, String consumerEmail) {
         try {
-            Order order = orderRepo.findById(orderId).orElse(null);
+            Order order = orderRepo.findWithItemsByOrderId(orderId).orElse(null);
             if (order == null) {
                 return ApiResponse.error("Update failed", "Order not found");
             }
@@ -164,6 +304,7 @@ public class OrderService {
 
             order.setOrderStatus(OrderStatus.COMPLETED);
             Order updatedOrder = orderRepo.save(order);
+            farmerOrderLineRepo.updateStatusByOrderId(orderId, OrderStatus.COMPLETED);
 
             return ApiResponse.success("Order receipt confirmed", updatedOrder);
         } catch (Exception e) {
@@ -173,9 +314,9 @@ public class OrderService {
     }
 
     /**
-     * Get all orders containing products from a specific farmer with PLACED status
+     * Get a page of the farmer's own order lines, optionally only those of orders in the given status
      */
-    public ApiResponse<List<Order>> getFarmerOrders(String farmerEmail) {
+    public ApiResponse<Page<FarmerOrderLine>> getFarmerOrders(String farmerEmail, OrderStatus status, Pageable pageable) {
         try {
             // Verify farmer exists
             Farmer farmer = farmerRepo.findByFarmerEmail(farmerEmail);
@@ -183,8 +324,10 @@ public class OrderService {
                 return ApiResponse.error("Failed to retrieve orders", "Farmer not found");
             }
 
-            List<Order> orders = orderRepo.findPlacedOrdersContainingFarmerProducts(farmerEmail);
-            return ApiResponse.success("Farmer orders retrieved successfully", orders);
+            Page<FarmerOrderLine> lines = status != null
+                    ? farmerOrderLineRepo.findByFarmerIdAndOrderStatus(farmer.getFarmerId(), status, pageable)
+                    : farmerOrderLineRepo.findByFarmerId(farmer.getFarmerId(), pageable);
+            return ApiResponse.success("Farmer orders retrieved successfully", lines);
         } catch (Exception e) {
             logger.error("Failed to retrieve farmer orders: {}", e.getMessage(), e);
             return ApiResponse.error("Failed to retrieve orders", e.getMessage());
@@ -196,17 +339,15 @@ public class OrderService {
      */
     public ApiResponse<Order> getFarmerOrderDetails(int orderId, String farmerEmail) {
         try {
-            Order order = orderRepo.findById(orderId).orElse(null);
-            if (order == null) {
-                return ApiResponse.error("Order not found", "No order found with ID: " + orderId);
+            if (!isFarmerOrder(orderId, farmerEmail)) {
+                return orderRepo.existsById(orderId)
+                        ? ApiResponse.error("Access denied", "This order does not contain your products")
+                        : ApiResponse.error("Order not found", "No order found with ID: " + orderId);
             }
 
-            // Check if order contains any products from this farmer
-            boolean hasProductFromFarmer = order.getOrderItems().stream()
-                    .anyMatch(item -> item.getProduct().getFarmer().getFarmerEmail().equalsIgnoreCase(farmerEmail));
-
-            if (!hasProductFromFarmer) {
-                return ApiResponse.error("Access denied", "This order does not contain your products");
+            Order order = orderRepo.findWithItemsByOrderId(orderId).orElse(null);
+            if (order == null) {
+                return ApiResponse.error("Order not found", "No order found with ID: " + orderId);
             }
 
             return ApiResponse.success("Order details retrieved", order);
@@ -215,4 +356,13 @@ public class OrderService {
             return ApiResponse.error("Failed to retrieve order details", e.getMessage());
         }
     }
+
+    /**
+     * Whether the order has a line of the farmer's products, read from the farmer's order lines
+     * so the order itself is only loaded for its owners. Carts have no lines, so they never match.
+     */
+    private boolean isFarmerOrder(int orderId, String farmerEmail) {
+        Farmer farmer = farmerRepo.findByFarmerEmail(farmerEmail);
+        return farmer != null && farmerOrderLineRepo.existsByFarmerIdAndOrderId(farmer.getFarmerId(), orderId);
+    }
 }
\ No newline at end of file
@@ -6,10 +6,12 @@ import com.example.finalyearproject.Abstraction.ProductRepo;
 import com.example.finalyearproject.DataStore.Product;
 import com.example.finalyearproject.DataStore.ProductImage;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.ProductChangedEvent;
 import com.example.finalyearproject.customExceptions.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.transaction.Transactional;
@@ -31,6 +33,9 @@ public class ProductImageService {
     @Autowired
     private Cloudinary cloudinary;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public ApiResponse<List<ProductImage>> uploadProductImages(int productId, MultipartFile[] files) {
         List<String> successfullyUploadedIds = new ArrayList<>();
         List<ProductImage> uploadedImages = new ArrayList<>();
@@ -90,6 +95,7 @@ public class ProductImageService {
 
             // Save the updated product with its new images
             productRepo.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.saved(product));
 
             if (uploadedImages.isEmpty()) {
                 return ApiResponse.error("No images uploaded", "No valid images were provided or all uploads failed");
@@ -196,6 +202,7 @@ public class ProductImageService {
 
                 // Delete from database
                 productImageRepository.delete(image);
+                eventPublisher.publishEvent(ProductChangedEvent.saved(product));
 
                 logger.info("Successfully deleted image {} (id: {})", publicId, imageId);
 
@@ -1,8 +1,6 @@
 package com.example.finalyearproject.Services;
 
 import com.example.finalyearproject.Abstraction.FarmerRepo;
-import com.example.finalyearproject.Abstraction.OrderItemRepo;
-import com.example.finalyearproject.Abstraction.OrderRepo;
 import com.example.finalyearproject.Abstraction.ProductRepo;
 import com.example.finalyearproject.DataStore.*;
 import com.example.finalyearproject.Specifications.ProductSpecification;
@@ -11,13 +9,19 @@ import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class ProductService {
@@ -29,17 +33,36 @@ public class ProductService {
     private FarmerRepo farmerRepo;
 
     @Autowired
-    private OrderRepo orderRepo;
+    private CartProductSync cartProductSync;
 
-    @Autowired
-    private OrderItemRepo orderItemRepo;
+    // Products in more open carts than this have the carts adjusted asynchronously
+    @Value("${cart.product-sync.async-threshold:500}")
+    private long cartSyncAsyncThreshold;
 
     @Autowired
-    private ProductSessionManager sessionManager;
+    private RandomProductFeed randomProductFeed;
 
     @Autowired
     private ProductImageService productImageService;
 
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private ProductAutocompleteIndex productAutocompleteIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private FeaturedProductLeaderboard featuredProductLeaderboard;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
 
     @Transactional
@@ -69,6 +92,7 @@ public class ProductService {
             product.setFarmer(farmer);
             farmer.getFarmerProducts().add(product);
             Product storedProduct = productRepo.save(product);
+            eventPublisher.publishEvent(ProductChangedEvent.saved(storedProduct));
 
             // Handle image uploads
             if (prodUtil.getImages() != null && prodUtil.getImages().length > 0) {
@@ -108,7 +132,7 @@ public class ProductService {
             }
 
             // Save old values for later order adjustment
-            double oldPrice = existingProduct.getPrice();
+            long oldPriceCents = existingProduct.getPriceCents();
             int oldStock = existingProduct.getStock();
 
             // Update product fields
@@ -123,38 +147,22 @@ public class ProductService {
             existingProduct.setImages(existingProduct.getImages());
 
             productRepo.save(existingProduct);
-
-            // Adjust associated order items (only for orders with status "CREATED")
-            if (existingProduct.getOrderItems() != null && !existingProduct.getOrderItems().isEmpty()) {
-                for (OrderItem item : existingProduct.getOrderItems()) {
-                    Order order = item.getOrder();
-                    if (!"CREATED".equals(order.getOrderStatus().toString())) {
-                        continue;
-                    }
-
-                    StringBuilder changeMsg = new StringBuilder();
-
-                    // Update price if changed
-                    if (oldPrice != dto.getPrice()) {
-                        double delta = (dto.getPrice() - oldPrice) * item.getQuantity();
-                        item.setUnitPrice(item.getUnitPrice() + delta);
-                        order.setTotalAmount(order.getTotalAmount() + delta);
-                        changeMsg.append(oldPrice < dto.getPrice() ? "Price Increased" : "Price Decreased");
-                    }
-
-                    // Update stock if changed and current order quantity exceeds the new stock
-                    if (oldStock != dto.getStock() && item.getQuantity() > dto.getStock()) {
-                        int removedQty = item.getQuantity() - dto.getStock();
-                        double deduct = removedQty * dto.getPrice();
-                        item.setQuantity(dto.getStock());
-                        item.setUnitPrice(item.getUnitPrice() - deduct);
-                        order.setTotalAmount(order.getTotalAmount() - deduct);
-                        changeMsg.append(" | Stock Reduced");
-                    }
-
-                    item.setFieldChange(changeMsg.toString());
-                    orderItemRepo.save(item);
-                    orderRepo.save(order);
+            eventPublisher.publishEvent(ProductChangedEvent.edited(existingProduct, oldPriceCents, oldStock));
+
+            // Adjust the open carts holding the product with bulk updates, after commit in the background
+            // when the product is in many carts so the farmer's request does not wait for the fan-out
+            long newPriceCents = existingProduct.getPriceCents();
+            if (oldPriceCents != newPriceCents || oldStock != dto.getStock()) {
+                int newStock = dto.getStock();
+                if (cartProductSync.countOpenCartItems(productId) <= cartSyncAsyncThreshold) {
+                    cartProductSync.propagate(productId, oldPriceCents, oldStock, newPriceCents, newStock);
+                } else {
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            cartProductSync.propagateAsync(productId, oldPriceCents, oldStock, newPriceCents, newStock);
+                        }
+                    });
                 }
             }
 
@@ -192,6 +200,7 @@ public class ProductService {
 
             // Delete the product
             productRepo.delete(productOpt.get());
+            eventPublisher.publishEvent(ProductChangedEvent.deleted(productId));
             return ApiResponse.success("Product deleted successfully");
         } catch (Exception e) {
             logger.error("Failed to delete product: {}", e.getMessage(), e);
@@ -201,9 +210,9 @@ public class ProductService {
     /**
      * Get all products
      */
-    public ApiResponse<List<Product>> getAllProducts() {
+    public ApiResponse<List<ProductSummaryDTO>> getAllProducts() {
         try {
-            List<Product> products = productRepo.findAll();
+            List<ProductSummaryDTO> products = productRepo.findAllSummaries();
             return ApiResponse.success("Products retrieved successfully", products);
         } catch (Exception e) {
             logger.error("Failed to get all products: {}", e.getMessage(), e);
@@ -216,7 +225,7 @@ public class ProductService {
      */
     public ApiResponse<Product> getProductById(int productId) {
         try {
-            Optional<Product> productOpt = productRepo.findById(productId);
+            Optional<Product> productOpt = productCache.get(productId);
             return productOpt.map(product -> ApiResponse.success("Product retrieved successfully", product)).orElseGet(() -> ApiResponse.error("Product not found", "No product found with ID: " + productId));
         } catch (Exception e) {
             logger.error("Failed to get product by ID: {}", e.getMessage(), e);
@@ -227,7 +236,7 @@ public class ProductService {
     /**
      * Get products by category
      */
-    public ApiResponse<List<Product>> getProductsByCategory(String categoryStr) {
+    public ApiResponse<List<ProductSummaryDTO>> getProductsByCategory(String categoryStr) {
         try {
             CategoryType category;
             try {
@@ -236,7 +245,7 @@ public class ProductService {
                 return ApiResponse.error("Invalid category", "Category not found: " + categoryStr);
             }
 
-            List<Product> products = productRepo.findByCategory(category);
+            List<ProductSummaryDTO> products = productRepo.findSummariesByCategory(category);
             return ApiResponse.success("Products retrieved successfully", products);
         } catch (Exception e) {
             logger.error("Failed to get products by category: {}", e.getMessage(), e);
@@ -285,7 +294,7 @@ public class ProductService {
      */
     public ApiResponse<Product> getProductByIdAndFarmerEmail(int productId, String farmerEmail) {
         try {
-            Product product = productRepo.findProductByProductId(productId);
+            Product product = productCache.get(productId).orElse(null);
             if (product == null) {
                 return ApiResponse.error("Product not found", "No product found with ID: " + productId);
             }
@@ -305,12 +314,27 @@ public class ProductService {
      * Search products by name
      */
     public ApiResponse<List<Product>> searchProductsByName(String query) {
+        return searchProductsByName(query, false);
+    }
+
+    /**
+     * Search products by name, optionally tolerating small typos in the query
+     */
+    public ApiResponse<List<Product>> searchProductsByName(String query, boolean fuzzy) {
         try {
             if (query == null || query.trim().isEmpty()) {
                 return ApiResponse.error("Invalid search", "Search query cannot be empty");
             }
 
-            List<Product> products = productRepo.findByNameContainingIgnoreCase(query);
+            List<Product> products;
+            if (productSearchIndex.isReady()) {
+                Set<Integer> matchingIds = fuzzy
+                        ? productSearchIndex.fuzzySearchByName(query)
+                        : productSearchIndex.searchByName(query);
+                products = matchingIds.isEmpty() ? Collections.emptyList() : productRepo.findAllById(matchingIds);
+            } else {
+                products = productRepo.findByNameContainingIgnoreCase(query);
+            }
             return ApiResponse.success("Search results retrieved successfully", products);
         } catch (Exception e) {
             logger.error("Failed to search products: {}", e.getMessage(), e);
@@ -319,15 +343,26 @@ public class ProductService {
     }
 
     /**
-     * Get featured products
-     * This is a placeholder - implement your business logic for determining featured products
+     * Typeahead suggestions for a name prefix, served from memory without touching the database
+     */
+    public ApiResponse<List<ProductSuggestion>> autocomplete(String prefix, int limit) {
+        try {
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return ApiResponse.success("No suggestions", Collections.emptyList());
+            }
+            return ApiResponse.success("Suggestions retrieved successfully", productAutocompleteIndex.suggest(prefix, limit));
+        } catch (Exception e) {
+            logger.error("Failed to autocomplete products: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to retrieve suggestions", e.getMessage());
+        }
+    }
+
+    /**
+     * Get featured products, the best rated in-stock products by Bayesian average rating
      */
-    public ApiResponse<List<Product>> getFeaturedProducts() {
+    public ApiResponse<List<ProductSummaryDTO>> getFeaturedProducts() {
         try {
-            // This is just an example implementation
-            // You might want to implement different logic based on your requirements
-            // For example, products with highest ratings, most ordered, etc.
-            List<Product> products = productRepo.findTop10ByOrderByAverageRatingDesc();
+            List<ProductSummaryDTO> products = featuredProductLeaderboard.getFeatured();
             return ApiResponse.success("Featured products retrieved successfully", products);
         } catch (Exception e) {
             logger.error("Failed to get featured products: {}", e.getMessage(), e);
@@ -338,11 +373,11 @@ public class ProductService {
     /**
      * Get recently added products
      */
-    public ApiResponse<List<Product>> getRecentProducts() {
+    public ApiResponse<List<ProductSummaryDTO>> getRecentProducts() {
         try {
             // Assuming you have a createdAt field or similar to sort by
             // If not, you'll need to adjust this method or add such a field to your Product entity
-            List<Product> products = productRepo.findTop10ByOrderByProductIdDesc(); // Using ID as a proxy for recency
+            List<ProductSummaryDTO> products = productRepo.findSummariesByNewest(PageRequest.of(0, 10)); // Using ID as a proxy for recency
             return ApiResponse.success("Recent products retrieved successfully", products);
         } catch (Exception e) {
             logger.error("Failed to get recent products: {}", e.getMessage(), e);
@@ -352,15 +387,33 @@ public class ProductService {
 
     public ApiResponse<Page<Product>> getFilteredProducts(ProductFilterDTO filterDTO) {
         try {
+            // Resolve the text query against the search index, the database only hydrates the matches
+            Set<Integer> matchingIds = null;
+            if (filterDTO.getQuery() != null && !filterDTO.getQuery().isEmpty() && productSearchIndex.isReady()) {
+                matchingIds = searchIndex(filterDTO);
+            }
+
+            // Facet counts come from the in-memory columns in one pass, not from extra COUNT queries
+            ProductFacets facets = null;
+            if (Boolean.TRUE.equals(filterDTO.getIncludeFacets()) && productFacetIndex.isReady()
+                    && (filterDTO.getQuery() == null || filterDTO.getQuery().isEmpty() || matchingIds != null)) {
+                facets = productFacetIndex.countFacets(filterDTO, matchingIds);
+            }
+
+            if (matchingIds != null && matchingIds.isEmpty()) {
+                Pageable emptyPage = PageRequest.of(filterDTO.getPage(), filterDTO.getSize());
+                return ApiResponse.success("Products retrieved successfully", withFacets(Page.empty(emptyPage), facets));
+            }
+
             // Create the specification from filter
-            Specification<Product> spec = ProductSpecification.getFilteredProducts(filterDTO);
+            Specification<Product> spec = ProductSpecification.getFilteredProducts(filterDTO, matchingIds);
 
             // Create sort based on the sortBy parameter
             Sort sort = Sort.unsorted();
             if (filterDTO.getSortBy() != null) {
                 sort = switch (filterDTO.getSortBy()) {
-                    case "price_asc" -> Sort.by(Sort.Direction.ASC, "price");
-                    case "price_desc" -> Sort.by(Sort.Direction.DESC, "price");
+                    case "price_asc" -> Sort.by(Sort.Direction.ASC, "priceCents");
+                    case "price_desc" -> Sort.by(Sort.Direction.DESC, "priceCents");
                     case "name_asc" -> Sort.by(Sort.Direction.ASC, "name");
                     case "name_desc" -> Sort.by(Sort.Direction.DESC, "name");
                     case "date_asc" -> Sort.by(Sort.Direction.ASC, "availableFromDate");
@@ -381,30 +434,106 @@ public class ProductService {
             // Fetch filtered products
             Page<Product> products = productRepo.findAll(spec, pageable);
 
-            return ApiResponse.success("Products retrieved successfully", products);
+            return ApiResponse.success("Products retrieved successfully", withFacets(products, facets));
         } catch (Exception e) {
             logger.error("Failed to filter products: {}", e.getMessage(), e);
             return ApiResponse.error("Failed to filter products", e.getMessage());
         }
     }
 
-    public ApiResponse<Page<Product>> getRandomProductsPaginated(Pageable pageable) {
+    /**
+     * Cursor based variant of getFilteredProducts. Seeks past the last returned sort key instead of
+     * using an offset, and only runs a COUNT query when includeTotal is set.
+     * Date sorts skip products without an availability date, since a null key cannot be seeked past.
+     */
+    public ApiResponse<CursorPage<Product>> getFilteredProductsByCursor(ProductFilterDTO filterDTO) {
         try {
-            // Initialize shuffled product IDs if not done already
-            if (!sessionManager.hasShuffledIds()) {
-                List<Integer> allProductIds = productRepo.findAllAvailableProductIds();
-                sessionManager.setShuffledProductIds(allProductIds);
+            KeysetScrollPosition position;
+            try {
+                position = ProductCursor.decode(filterDTO.getCursor(), filterDTO.getSortBy());
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error("Invalid cursor", e.getMessage());
             }
+            if (filterDTO.getSize() == null || filterDTO.getSize() < 1) {
+                return ApiResponse.error("Invalid size", "Size must be between 1 and 100");
+            }
+            int size = Math.min(filterDTO.getSize(), 100);
+
+            Set<Integer> matchingIds = null;
+            if (filterDTO.getQuery() != null && !filterDTO.getQuery().isEmpty() && productSearchIndex.isReady()) {
+                matchingIds = searchIndex(filterDTO);
+                if (matchingIds.isEmpty()) {
+                    return ApiResponse.success("Products retrieved successfully",
+                            new CursorPage<>(Collections.emptyList(), null, false,
+                                    Boolean.TRUE.equals(filterDTO.getIncludeTotal()) ? 0L : null));
+                }
+            }
+
+            Specification<Product> spec = ProductSpecification.getFilteredProducts(filterDTO, matchingIds);
+            if (ProductCursor.sortsByDate(filterDTO.getSortBy())) {
+                spec = spec.and(ProductSpecification.hasAvailableFromDate());
+            }
+
+            Sort sort = ProductCursor.sortFor(filterDTO.getSortBy());
+            Window<Product> window = productRepo.findBy(spec, query -> query
+                    .sortBy(sort)
+                    .limit(size)
+                    .scroll(position));
+
+            List<Product> content = window.getContent();
+            String nextCursor = window.hasNext() && !content.isEmpty()
+                    ? ProductCursor.encode(filterDTO.getSortBy(), content.get(content.size() - 1))
+                    : null;
+            Long total = Boolean.TRUE.equals(filterDTO.getIncludeTotal()) ? productRepo.count(spec) : null;
+
+            return ApiResponse.success("Products retrieved successfully",
+                    new CursorPage<>(content, nextCursor, nextCursor != null, total));
+        } catch (Exception e) {
+            logger.error("Failed to filter products by cursor: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to filter products", e.getMessage());
+        }
+    }
+
+    public ApiResponse<Map<String, Object>> getCacheStats() {
+        return ApiResponse.success("Product cache statistics retrieved successfully", productCache.getStats());
+    }
+
+    private Set<Integer> searchIndex(ProductFilterDTO filterDTO) {
+        return Boolean.TRUE.equals(filterDTO.getFuzzy())
+                ? productSearchIndex.fuzzySearch(filterDTO.getQuery())
+                : productSearchIndex.search(filterDTO.getQuery());
+    }
+
+    private Page<Product> withFacets(Page<Product> page, ProductFacets facets) {
+        return facets != null ? new ProductPage(page, facets) : page;
+    }
+
+    /**
+     * A page of the in-stock products in a random order chosen by the seed.
+     * The same seed always gives the same order, so clients page through it by sending the seed back;
+     * when no seed is given a new one is generated and returned with the page.
+     * Seeds travel as decimal strings so JavaScript clients send back exactly what they got.
+     */
+    public ApiResponse<Page<Product>> getRandomProductsPaginated(Pageable pageable, String seed) {
+        try {
+            long feedSeed;
+            try {
+                feedSeed = seed != null ? Long.parseLong(seed) : RandomProductFeed.newSeed();
+            } catch (NumberFormatException e) {
+                return ApiResponse.error("Invalid seed", "Seed must be the value returned with a previous page: " + seed);
+            }
+            int total = randomProductFeed.size();
 
             // Get the specific page of product IDs
-            List<Integer> pageProductIds = sessionManager.getPageOfIds(
+            List<Integer> pageProductIds = randomProductFeed.getPageOfIds(
+                    feedSeed,
                     pageable.getPageNumber(),
                     pageable.getPageSize());
 
             if (pageProductIds.isEmpty()) {
                 return ApiResponse.success(
                         "No more products available",
-                        new PageImpl<>(Collections.emptyList(), pageable, sessionManager.getShuffledProductIds().size())
+                        new ProductPage(new PageImpl<>(Collections.emptyList(), pageable, total), null, feedSeed)
                 );
             }
 
@@ -412,11 +541,7 @@ public class ProductService {
             List<Product> products = productRepo.findByProductIdsInOrderNative(pageProductIds);
 
             // Create a Page object
-            Page<Product> productPage = new PageImpl<>(
-                    products,
-                    pageable,
-                    sessionManager.getShuffledProductIds().size()
-            );
+            Page<Product> productPage = new ProductPage(new PageImpl<>(products, pageable, total), null, feedSeed);
 
             return ApiResponse.success("Random products retrieved successfully", productPage);
         } catch (Exception e) {
@@ -426,17 +551,10 @@ public class ProductService {
     }
 
     /**
-     * Reset the random order (can be called when a user explicitly wants a new shuffle)
+     * Reset the random order. The order lives entirely in the seed, so this just hands out a new one.
      */
     public ApiResponse<String> resetRandomOrder() {
-        try {
-            List<Integer> allProductIds = productRepo.findAllAvailableProductIds();
-            sessionManager.setShuffledProductIds(allProductIds);
-            return ApiResponse.success("Random product order has been reset", null);
-        } catch (Exception e) {
-            logger.error("Failed to reset random order: {}", e.getMessage(), e);
-            return ApiResponse.error("Failed to reset random order", e.getMessage());
-        }
+        return ApiResponse.success("Random product order has been reset", Long.toString(RandomProductFeed.newSeed()));
     }
 
-}
\ No newline at end of file
+}
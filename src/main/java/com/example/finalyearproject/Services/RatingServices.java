@@ -3,11 +3,20 @@ package com.example.finalyearproject.Services;
 import com.example.finalyearproject.Abstraction.*;
 import com.example.finalyearproject.DataStore.*;
 import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CursorPage;
+import com.example.finalyearproject.Utility.ProductChangedEvent;
+import com.example.finalyearproject.Utility.RatingEligibilityDTO;
+import com.example.finalyearproject.Utility.ReviewCursor;
+import com.example.finalyearproject.Utility.ReviewDTO;
 import com.example.finalyearproject.customExceptions.ResourceNotFoundException;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -33,39 +42,27 @@ public class RatingServices {
     @Autowired
     private OrderItemRepo orderItemRepo;
 
-    // Helper method to update the farmer's aggregates incrementally on add/update/delete
-    private void updateFarmerAggregates(Farmer farmer, double scoreDelta, int countDelta) {
-        // Get current aggregates, ensuring they are not null
-        double currentTotal = farmer.getTotalRating() != null ? farmer.getTotalRating() : 0.0;
-        int currentCount = farmer.getRatingCount() != null ? farmer.getRatingCount() : 0;
-
-        currentTotal += scoreDelta;
-        currentCount += countDelta;
-
-        double newAverage = currentCount > 0 ? currentTotal / currentCount : 0.0;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
-        farmer.setTotalRating(currentTotal);
-        farmer.setRatingCount(currentCount);
-        farmer.setAverageRating(newAverage);
+    @Autowired
+    private EntityManager entityManager;
 
-        farmerRepo.save(farmer);
+    // Helper method to update the farmer's aggregates incrementally on add/update/delete.
+    // The change is applied in SQL rather than read-modify-write, so concurrent ratings are all counted.
+    private void updateFarmerAggregates(Farmer farmer, double scoreDelta, int countDelta) {
+        farmerRepo.addToRatingAggregates(farmer.getFarmerId(), scoreDelta, countDelta);
     }
 
-    private void updateProductAggregates(Product product, double scoreDelta, int countDelta) {
-        // Get current aggregates, ensuring they are not null
-        double currentTotal = product.getTotalRating() != null ? product.getTotalRating() : 0.0;
-        int currentCount = product.getRatingCount() != null ? product.getRatingCount() : 0;
-
-        currentTotal += scoreDelta;
-        currentCount += countDelta;
+    // addedScore and removedScore are the scores of the rating added and removed, 0 when there is none
+    private void updateProductAggregates(Product product, int addedScore, int removedScore) {
+        int countDelta = (addedScore > 0 ? 1 : 0) - (removedScore > 0 ? 1 : 0);
+        productRepo.addToRatingAggregates(product.getProductId(), addedScore - removedScore, countDelta,
+                addedScore, removedScore);
 
-        double newAverage = currentCount > 0 ? currentTotal / currentCount : 0.0;
-
-        product.setTotalRating(currentTotal);
-        product.setRatingCount(currentCount);
-        product.setAverageRating(newAverage);
-
-        productRepo.save(product);
+        // The update bypassed the persistence context, reload the new aggregates for the listeners
+        entityManager.refresh(product);
+        eventPublisher.publishEvent(ProductChangedEvent.saved(product));
     }
 
     @Transactional
@@ -131,7 +128,7 @@ public class RatingServices {
             Farmer farmer = product.getFarmer();
             if (farmer != null) {
                 updateFarmerAggregates(farmer, savedRating.getScore(), 1);
-                updateProductAggregates(product, savedRating.getScore(), 1);
+                updateProductAggregates(product, savedRating.getScore(), 0);
             }
 
             return ApiResponse.success("Rating added successfully", savedRating);
@@ -162,7 +159,7 @@ public class RatingServices {
             }
 
             // Capture the old score to determine the delta
-            double oldScore = existingRating.getScore();
+            int oldScore = existingRating.getScore();
             existingRating.setScore(updatedRating.getScore());
             existingRating.setComment(updatedRating.getComment());
             Rating savedRating = ratingRepo.save(existingRating);
@@ -172,7 +169,7 @@ public class RatingServices {
             if (farmer != null) {
                 // Update aggregates: subtract the old score and add the new one (count remains unchanged)
                 updateFarmerAggregates(farmer, savedRating.getScore() - oldScore, 0);
-                updateProductAggregates(product, savedRating.getScore() - oldScore, 0);
+                updateProductAggregates(product, savedRating.getScore(), oldScore);
             }
 
             return ApiResponse.success("Rating updated successfully", savedRating);
@@ -221,7 +218,7 @@ public class RatingServices {
             if (farmer != null) {
                 // Subtract the rating's score and decrement the count
                 updateFarmerAggregates(farmer, -ratingToDelete.getScore(), -1);
-                updateProductAggregates(product, -ratingToDelete.getScore(), -1);
+                updateProductAggregates(product, 0, ratingToDelete.getScore());
             }
 
             return ApiResponse.success("Rating deleted successfully");
@@ -231,19 +228,42 @@ public class RatingServices {
         }
     }
 
-    @Transactional
-    public ApiResponse<Set<Rating>> getProductRatings(int productId) {
+    /**
+     * Get a slice of a product's reviews sorted newest first, or by highest or lowest score.
+     * Seeks past the last returned review instead of loading the product and all its ratings.
+     */
+    public ApiResponse<CursorPage<ReviewDTO>> getProductRatings(int productId, String sortBy, String cursor, int size) {
         try {
-            Product product;
+            ReviewCursor.Position position;
             try {
-                product = productRepo.findById(productId)
-                        .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + productId));
-            } catch (ResourceNotFoundException e) {
-                return ApiResponse.error("Failed to retrieve ratings", e.getMessage());
+                position = ReviewCursor.decode(cursor, sortBy);
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error("Invalid cursor", e.getMessage());
+            }
+
+            if (!productRepo.existsById(productId)) {
+                return ApiResponse.error("Failed to retrieve ratings", "Product not found with ID: " + productId);
             }
 
-            Set<Rating> ratings = product.getRatings();
-            return ApiResponse.success("Ratings retrieved successfully", ratings);
+            // One extra row tells whether there is a next slice
+            Pageable limit = PageRequest.of(0, size + 1);
+            String sort = ReviewCursor.normalize(sortBy);
+            List<ReviewDTO> reviews = switch (sort) {
+                case ReviewCursor.HIGHEST -> position == null
+                        ? ratingRepo.findHighestReviews(productId, limit)
+                        : ratingRepo.findHighestReviewsAfter(productId, position.score(), position.ratingId(), limit);
+                case ReviewCursor.LOWEST -> position == null
+                        ? ratingRepo.findLowestReviews(productId, limit)
+                        : ratingRepo.findLowestReviewsAfter(productId, position.score(), position.ratingId(), limit);
+                default -> position == null
+                        ? ratingRepo.findNewestReviews(productId, limit)
+                        : ratingRepo.findNewestReviewsAfter(productId, position.timestamp(), position.ratingId(), limit);
+            };
+
+            boolean hasNext = reviews.size() > size;
+            List<ReviewDTO> content = hasNext ? reviews.subList(0, size) : reviews;
+            String nextCursor = hasNext ? ReviewCursor.encode(sort, content.get(content.size() - 1)) : null;
+            return ApiResponse.success("Ratings retrieved successfully", new CursorPage<>(content, nextCursor, hasNext, null));
         } catch (Exception e) {
             logger.error("Failed to get product ratings: {}", e.getMessage(), e);
             return ApiResponse.error("Failed to retrieve ratings", e.getMessage());
@@ -284,6 +304,22 @@ public class RatingServices {
         }
     }
 
+    /**
+     * Check which items of an order can be rated, with one query for the whole order
+     */
+    public ApiResponse<List<RatingEligibilityDTO>> getOrderRatingEligibility(int orderId, String consumerEmail) {
+        try {
+            List<RatingEligibilityDTO> items = orderItemRepo.findRatingEligibilityByOrderId(orderId, consumerEmail);
+            if (items.isEmpty()) {
+                return ApiResponse.error("Failed to check rating ability", "Order not found");
+            }
+            return ApiResponse.success("Rating ability checked", items);
+        } catch (Exception e) {
+            logger.error("Failed to check rating ability: {}", e.getMessage(), e);
+            return ApiResponse.error("Failed to check rating ability", e.getMessage());
+        }
+    }
+
     /**
      * Check if a specific order item can be rated
      */
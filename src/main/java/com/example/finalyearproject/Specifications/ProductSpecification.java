@@ -2,21 +2,33 @@ package com.example.finalyearproject.Specifications;
 
 import com.example.finalyearproject.DataStore.CategoryType;
 import com.example.finalyearproject.DataStore.Product;
+import com.example.finalyearproject.Utility.Money;
 import com.example.finalyearproject.Utility.ProductFilterDTO;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class ProductSpecification {
 
     public static Specification<Product> getFilteredProducts(ProductFilterDTO filter) {
+        return getFilteredProducts(filter, null);
+    }
+
+    /**
+     * Same filters, but the text query has already been resolved against the search index.
+     * When matchingIds is null the query falls back to a LIKE scan on name and description.
+     */
+    public static Specification<Product> getFilteredProducts(ProductFilterDTO filter, Collection<Integer> matchingIds) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
             // Search by query (name or description)
-            if (filter.getQuery() != null && !filter.getQuery().isEmpty()) {
+            if (matchingIds != null) {
+                predicates.add(root.get("productId").in(matchingIds));
+            } else if (filter.getQuery() != null && !filter.getQuery().isEmpty()) {
                 String searchPattern = "%" + filter.getQuery().toLowerCase() + "%";
                 predicates.add(criteriaBuilder.or(
                         criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), searchPattern),
@@ -36,10 +48,10 @@ public class ProductSpecification {
 
             // Filter by price range
             if (filter.getMinPrice() != null) {
-                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("priceCents"), Money.toCents(filter.getMinPrice())));
             }
             if (filter.getMaxPrice() != null) {
-                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("priceCents"), Money.toCents(filter.getMaxPrice())));
             }
 
             // Filter by quantity/stock range
@@ -60,10 +72,14 @@ public class ProductSpecification {
 
             // Filter by organic
             if (filter.getOrganic() != null) {
-                predicates.add(criteriaBuilder.equal(root.get("organic"), filter.getOrganic()));
+                predicates.add(criteriaBuilder.equal(root.get("isOrganic"), filter.getOrganic()));
             }
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
+
+    public static Specification<Product> hasAvailableFromDate() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.isNotNull(root.get("availableFromDate"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.example.finalyearproject.Utility;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CartBatchDTO {
+    @NotEmpty(message = "At least one cart operation is required")
+    @Size(max = 200, message = "A batch cannot exceed 200 operations")
+    private List<@Valid CartOperationDTO> operations;
+}
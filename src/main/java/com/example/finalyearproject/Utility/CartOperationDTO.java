@@ -0,0 +1,30 @@
+package com.example.finalyearproject.Utility;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+/**
+ * One cart change of a batch, the product is addressed by ID since offline clients have no order item IDs
+ */
+@Data
+public class CartOperationDTO {
+
+    public enum Type {
+        // Add quantity units
+        ADD,
+        // Take away quantity units, removing the line when none are left
+        REMOVE,
+        // Make the line hold exactly quantity units, 0 removes it
+        SET
+    }
+
+    @NotNull(message = "Operation type is required")
+    private Type type;
+
+    @Min(value = 1, message = "Invalid product ID")
+    private int productId;
+
+    @Min(value = 0, message = "Quantity cannot be negative")
+    private int quantity;
+}
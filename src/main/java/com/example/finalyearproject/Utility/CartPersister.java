@@ -0,0 +1,110 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ConsumerRepo;
+import com.example.finalyearproject.Abstraction.OrderItemRepo;
+import com.example.finalyearproject.Abstraction.OrderRepo;
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Order;
+import com.example.finalyearproject.DataStore.OrderItem;
+import com.example.finalyearproject.DataStore.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Writes cart snapshots from CartStore to the orders and order_item tables
+ */
+@Component
+public class CartPersister {
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Autowired
+    private OrderItemRepo orderItemRepo;
+
+    @Autowired
+    private ConsumerRepo consumerRepo;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    /**
+     * Persist several carts in one transaction, so their item updates are flushed together as JDBC batches.
+     * The snapshots are collected once the transaction has started.
+     */
+    @Transactional
+    public List<Order> persistAll(Supplier<List<CartState.Snapshot>> collector) {
+        List<CartState.Snapshot> snapshots = collector.get();
+        List<Order> orders = new ArrayList<>(snapshots.size());
+        for (CartState.Snapshot snapshot : snapshots) {
+            orders.add(persist(snapshot));
+        }
+        return orders;
+    }
+
+    /**
+     * Make the CREATED order of the consumer match the snapshot, creating it if needed
+     */
+    @Transactional
+    public Order persist(CartState.Snapshot snapshot) {
+        Order order = null;
+        if (snapshot.orderId() > 0) {
+            order = orderRepo.findWithItemsByOrderId(snapshot.orderId())
+                    .filter(existing -> existing.getOrderStatus() == OrderStatus.CREATED)
+                    .orElse(null);
+        }
+        if (order == null) {
+            order = new Order();
+            order.setConsumer(consumerRepo.getReferenceById(snapshot.consumerId()));
+            order.setOrderStatus(OrderStatus.CREATED);
+            order.setOrderItems(new HashSet<>());
+            order.setTotalAmountCents(snapshot.totalCents());
+            order = orderRepo.save(order);
+        }
+
+        Map<Integer, CartState.LineSnapshot> linesByItemId = new HashMap<>();
+        for (CartState.LineSnapshot line : snapshot.lines()) {
+            if (line.orderItemId() > 0) {
+                linesByItemId.put(line.orderItemId(), line);
+            }
+        }
+
+        // Update the persisted lines, the ones no longer in the cart are removed (orphanRemoval)
+        Set<Integer> persistedItemIds = new HashSet<>();
+        Iterator<OrderItem> items = order.getOrderItems().iterator();
+        while (items.hasNext()) {
+            OrderItem item = items.next();
+            CartState.LineSnapshot line = linesByItemId.get(item.getOrderItemId());
+            if (line == null) {
+                items.remove();
+                continue;
+            }
+            item.setQuantity(line.quantity());
+            item.setUnitPriceCents(line.unitPriceCents());
+            item.setFieldChange(line.fieldChange());
+            persistedItemIds.add(item.getOrderItemId());
+        }
+
+        // Insert the lines added since the last flush
+        for (CartState.LineSnapshot line : snapshot.lines()) {
+            if (persistedItemIds.contains(line.orderItemId())) {
+                continue;
+            }
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(productRepo.getReferenceById(line.productId()));
+            item.setQuantity(line.quantity());
+            item.setUnitPriceCents(line.unitPriceCents());
+            item.setFieldChange(line.fieldChange());
+            order.getOrderItems().add(orderItemRepo.save(item));
+        }
+
+        // Managed from here on, the remaining updates are flushed with the transaction
+        order.setTotalAmountCents(snapshot.totalCents());
+        return order;
+    }
+}
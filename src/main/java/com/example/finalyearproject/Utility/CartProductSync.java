@@ -0,0 +1,78 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.OrderItemRepo;
+import com.example.finalyearproject.Abstraction.OrderRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Propagates a farmer's price or stock edit to the persisted open carts (CREATED orders) holding the product,
+ * with one bulk update of their lines and one recomputation of their totals.
+ * Carts loaded in CartStore are repriced in memory from ProductChangedEvent.
+ */
+@Component
+public class CartProductSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartProductSync.class);
+
+    @Autowired
+    private OrderItemRepo orderItemRepo;
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    public long countOpenCartItems(int productId) {
+        return orderItemRepo.countOpenCartItemsByProductId(productId);
+    }
+
+    /**
+     * Reprice the open cart lines of the product and, when the stock changed, trim them to the stock
+     * and shrink the stock holds of the trimmed carts to match.
+     * Price and stock are read from the product row when the update runs, the values passed in only decide
+     * whether to trim and how to label the change, so a stale async run cannot undo a newer edit.
+     *
+     * @return number of cart lines updated
+     */
+    @Transactional
+    public int propagate(int productId, long oldPriceCents, int oldStock, long newPriceCents, int newStock) {
+        String priceChange = oldPriceCents == newPriceCents ? ""
+                : oldPriceCents < newPriceCents ? "Price Increased" : "Price Decreased";
+
+        int updated = orderItemRepo.repriceOpenCartItems(productId, oldStock != newStock, priceChange);
+        if (updated > 0) {
+            orderRepo.recomputeOpenCartTotals(productId);
+        }
+        if (updated > 0 && oldStock != newStock) {
+            Map<Integer, Integer> quantities = new HashMap<>();
+            for (Object[] row : orderItemRepo.findOpenCartQuantitiesAtStock(productId)) {
+                quantities.merge((Integer) row[0], (Integer) row[1], Integer::sum);
+            }
+            stockReservations.reduceAfterCommit(productId, quantities);
+        }
+        return updated;
+    }
+
+    /**
+     * Same as propagate, in the background for products held by many carts
+     */
+    @Async
+    @Transactional
+    public void propagateAsync(int productId, long oldPriceCents, int oldStock, long newPriceCents, int newStock) {
+        try {
+            int updated = propagate(productId, oldPriceCents, oldStock, newPriceCents, newStock);
+            logger.info("Propagated the edit of product {} to {} cart items", productId, updated);
+        } catch (Exception e) {
+            logger.error("Failed to propagate the edit of product {} to carts: {}", productId, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Order;
+import com.example.finalyearproject.DataStore.OrderItem;
+import com.example.finalyearproject.DataStore.OrderStatus;
+import com.example.finalyearproject.DataStore.Product;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory copy of one consumer's active cart, owned by CartStore.
+ * Mutations must hold the monitor of the cart; persisting it additionally holds flushLock.
+ */
+public class CartState {
+
+    @Getter
+    @Setter
+    public class Line {
+        private final int productId;
+        private String productName;
+        private int quantity;
+
+        // Price of the whole line in cents, like OrderItem.unitPriceCents
+        private long unitPriceCents;
+        private String fieldChange;
+
+        // Negative until the line has been persisted and has a real order_item ID
+        private int orderItemId;
+
+        // The ID the line was first shown with, still accepted after it has been persisted
+        private final int temporaryId;
+
+        Line(int productId, int orderItemId, int temporaryId) {
+            this.productId = productId;
+            this.orderItemId = orderItemId;
+            this.temporaryId = temporaryId;
+        }
+
+        public boolean hasId(int id) {
+            return orderItemId == id || temporaryId == id;
+        }
+
+        // Keeps the cart total up to date
+        public void setUnitPriceCents(long unitPriceCents) {
+            totalCents += unitPriceCents - this.unitPriceCents;
+            this.unitPriceCents = unitPriceCents;
+        }
+    }
+
+    /**
+     * Immutable copy of a cart taken for persisting it
+     */
+    public record Snapshot(int consumerId, int orderId, List<LineSnapshot> lines, long totalCents, long version) {
+    }
+
+    public record LineSnapshot(int productId, int orderItemId, int quantity, long unitPriceCents, String fieldChange) {
+    }
+
+    @Getter
+    private final int consumerId;
+
+    @Getter
+    private int orderId;
+
+    private Date createdAt;
+
+    // productId -> line, a cart holds at most one line per product
+    private final Map<Integer, Line> lines = new LinkedHashMap<>();
+
+    // Sum of the line prices, maintained as lines change
+    @Getter
+    private long totalCents;
+
+    private long version;
+    private long persistedVersion;
+
+    @Getter
+    private long lastAccess = System.currentTimeMillis();
+
+    // Set once the cart was dropped from the store, later mutations must reload it
+    @Getter
+    private boolean detached;
+
+    final ReentrantLock flushLock = new ReentrantLock();
+
+    CartState(int consumerId) {
+        this.consumerId = consumerId;
+    }
+
+    static CartState fromOrder(int consumerId, Order order) {
+        CartState state = new CartState(consumerId);
+        if (order != null) {
+            state.orderId = order.getOrderId();
+            state.createdAt = order.getCreatedAt();
+            for (OrderItem item : order.getOrderItems()) {
+                Line line = state.new Line(item.getProductId(), item.getOrderItemId(), item.getOrderItemId());
+                line.productName = item.getProductName();
+                line.quantity = item.getQuantity();
+                line.setUnitPriceCents(item.getUnitPriceCents());
+                line.fieldChange = item.getFieldChange();
+                state.lines.put(line.productId, line);
+            }
+        }
+        return state;
+    }
+
+    public Line getLine(int productId) {
+        return lines.get(productId);
+    }
+
+    public Line findLineById(int orderItemId) {
+        for (Line line : lines.values()) {
+            if (line.hasId(orderItemId)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    public Collection<Line> getLines() {
+        return lines.values();
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    Line addLine(int productId, int temporaryId) {
+        Line line = new Line(productId, temporaryId, temporaryId);
+        lines.put(productId, line);
+        return line;
+    }
+
+    public void removeLine(int productId) {
+        Line removed = lines.remove(productId);
+        if (removed != null) {
+            totalCents -= removed.unitPriceCents;
+        }
+    }
+
+    void touch() {
+        version++;
+        lastAccess = System.currentTimeMillis();
+    }
+
+    boolean isDirty() {
+        return version != persistedVersion;
+    }
+
+    void detach() {
+        detached = true;
+    }
+
+    Snapshot snapshot() {
+        List<LineSnapshot> copy = new ArrayList<>(lines.size());
+        for (Line line : lines.values()) {
+            copy.add(new LineSnapshot(line.productId, line.orderItemId, line.quantity, line.unitPriceCents, line.fieldChange));
+        }
+        return new Snapshot(consumerId, orderId, copy, totalCents, version);
+    }
+
+    /**
+     * Record the IDs generated when a snapshot was persisted
+     */
+    void persisted(Snapshot snapshot, Order order) {
+        orderId = order.getOrderId();
+        if (createdAt == null) {
+            createdAt = order.getCreatedAt();
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            Line line = lines.get(item.getProductId());
+            if (line != null && line.orderItemId < 0) {
+                line.orderItemId = item.getOrderItemId();
+            }
+        }
+        if (version == snapshot.version()) {
+            persistedVersion = version;
+        }
+    }
+
+    /**
+     * Transient order with the same JSON shape as the persisted cart
+     */
+    public Order toOrder() {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setOrderStatus(OrderStatus.CREATED);
+        order.setCreatedAt(createdAt);
+        order.setTotalAmountCents(totalCents);
+        order.setOrderItems(toOrderItems());
+        return order;
+    }
+
+    public Set<OrderItem> toOrderItems() {
+        Set<OrderItem> items = new LinkedHashSet<>();
+        for (Line line : lines.values()) {
+            Product product = new Product();
+            product.setProductId(line.productId);
+            product.setName(line.productName);
+
+            OrderItem item = new OrderItem();
+            item.setOrderItemId(line.orderItemId);
+            item.setProduct(product);
+            item.setQuantity(line.quantity);
+            item.setUnitPriceCents(line.unitPriceCents);
+            item.setFieldChange(line.fieldChange);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.OrderRepo;
+import com.example.finalyearproject.DataStore.Order;
+import com.example.finalyearproject.DataStore.OrderStatus;
+import com.example.finalyearproject.DataStore.Product;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Active carts kept in memory by consumerId, persisted write-behind.
+ * Cart clicks only touch memory; a scheduled flush writes the changed carts to orders/order_item
+ * in one transaction. A cart not in memory (first use, after eviction or after a restart) is
+ * loaded from its CREATED order, which together with the flush on shutdown makes carts survive restarts.
+ */
+@Component
+public class CartStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Autowired
+    private CartPersister cartPersister;
+
+    @Autowired
+    private StockReservations stockReservations;
+
+    // Clean carts idle for longer than this are dropped from memory
+    @Value("${cart.store.idle-eviction-ms:1800000}")
+    private long idleEvictionMs;
+
+    private final Map<Integer, CartState> carts = new ConcurrentHashMap<>();
+
+    // Source of the temporary IDs of lines that are not persisted yet
+    private final AtomicInteger temporaryIds = new AtomicInteger();
+
+    /**
+     * Read the consumer's cart. The state must only be read while synchronized on it.
+     */
+    public <T> T read(int consumerId, Function<CartState, T> reader) {
+        while (true) {
+            CartState state = load(consumerId);
+            synchronized (state) {
+                if (!state.isDetached()) {
+                    return reader.apply(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a change to the consumer's cart and schedule it for persisting
+     */
+    public <T> T update(int consumerId, Function<CartState, T> mutation) {
+        while (true) {
+            CartState state = load(consumerId);
+            synchronized (state) {
+                if (!state.isDetached()) {
+                    T result = mutation.apply(state);
+                    state.touch();
+                    return result;
+                }
+            }
+        }
+    }
+
+    public CartState.Line addLine(CartState state, int productId) {
+        return state.addLine(productId, -temporaryIds.incrementAndGet());
+    }
+
+    /**
+     * Persist the cart as part of the caller's transaction (checkout), returning the managed CREATED order.
+     * Once the transaction commits the cart is dropped from memory if the order left the CREATED status.
+     *
+     * @return null when the cart is empty
+     */
+    public Order persistForCheckout(int consumerId) {
+        CartState state = lockForFlush(consumerId);
+
+        boolean released = false;
+        try {
+            CartState.Snapshot snapshot;
+            synchronized (state) {
+                if (state.isEmpty()) {
+                    return null;
+                }
+                snapshot = state.snapshot();
+            }
+
+            Order order = cartPersister.persist(snapshot);
+
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        try {
+                            if (status == STATUS_COMMITTED) {
+                                checkedOut(state, snapshot, order);
+                            }
+                        } finally {
+                            state.flushLock.unlock();
+                        }
+                    }
+                });
+                released = true;
+            } else {
+                checkedOut(state, snapshot, order);
+            }
+            return order;
+        } finally {
+            if (!released) {
+                state.flushLock.unlock();
+            }
+        }
+    }
+
+    private CartState lockForFlush(int consumerId) {
+        while (true) {
+            CartState state = load(consumerId);
+            state.flushLock.lock();
+            if (!state.isDetached()) {
+                return state;
+            }
+            state.flushLock.unlock(); // Evicted meanwhile, load it again
+        }
+    }
+
+    private void checkedOut(CartState state, CartState.Snapshot snapshot, Order order) {
+        synchronized (state) {
+            if (order.getOrderStatus() == OrderStatus.CREATED) {
+                state.persisted(snapshot, order);
+            } else {
+                // Placed, the next cart of this consumer starts empty
+                state.detach();
+                carts.remove(state.getConsumerId(), state);
+            }
+        }
+    }
+
+    /**
+     * Write every changed cart to the database
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}")
+    public void flush() {
+        flush(false);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush(true);
+        logger.info("Cart store flushed on shutdown");
+    }
+
+    private void flush(boolean waitForLocks) {
+        List<CartState> locked = new ArrayList<>();
+        List<CartState.Snapshot> snapshots = new ArrayList<>();
+
+        try {
+            // Carts are locked from inside the flush transaction, once it holds its connection. A checkout waits
+            // for its cart lock while holding a connection, so locking first could starve the flush of connections
+            recordPersisted(snapshots, cartPersister.persistAll(
+                    () -> lockChangedCarts(carts.values(), waitForLocks, locked, snapshots)));
+        } catch (Exception e) {
+            // Retry one by one so that a single bad cart does not hold back the others
+            logger.warn("Batched cart flush failed, retrying carts individually: {}", e.getMessage());
+            unlockAll(locked);
+            for (CartState.Snapshot failed : snapshots) {
+                CartState state = carts.get(failed.consumerId());
+                if (state == null) {
+                    continue;
+                }
+
+                List<CartState> cartLocked = new ArrayList<>();
+                List<CartState.Snapshot> cartSnapshots = new ArrayList<>();
+                try {
+                    recordPersisted(cartSnapshots, cartPersister.persistAll(
+                            () -> lockChangedCarts(List.of(state), waitForLocks, cartLocked, cartSnapshots)));
+                } catch (Exception cartException) {
+                    logger.error("Failed to persist cart of consumer {}: {}",
+                            failed.consumerId(), cartException.getMessage(), cartException);
+                } finally {
+                    unlockAll(cartLocked);
+                }
+            }
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    /**
+     * Lock the given carts and snapshot the changed ones, dropping clean carts that have been idle too long
+     */
+    private List<CartState.Snapshot> lockChangedCarts(Collection<CartState> states, boolean waitForLocks,
+                                                      List<CartState> locked, List<CartState.Snapshot> snapshots) {
+        long now = System.currentTimeMillis();
+        for (CartState state : states) {
+            if (waitForLocks) {
+                state.flushLock.lock();
+            } else if (!state.flushLock.tryLock()) {
+                continue; // Being checked out, it is persisted by the checkout
+            }
+            locked.add(state);
+
+            synchronized (state) {
+                if (state.isDirty()) {
+                    snapshots.add(state.snapshot());
+                } else if (now - state.getLastAccess() > idleEvictionMs) {
+                    state.detach();
+                    carts.remove(state.getConsumerId(), state);
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    private void unlockAll(List<CartState> locked) {
+        for (CartState state : locked) {
+            state.flushLock.unlock();
+        }
+        locked.clear();
+    }
+
+    private void recordPersisted(List<CartState.Snapshot> snapshots, List<Order> orders) {
+        for (int i = 0; i < snapshots.size(); i++) {
+            CartState state = carts.get(snapshots.get(i).consumerId());
+            if (state != null) {
+                synchronized (state) {
+                    state.persisted(snapshots.get(i), orders.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep carts in line with product changes once they commit: deleted products leave the carts,
+     * and a farmer's price or stock edit reprices or trims the lines the same way it does persisted carts
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        if (product != null && event.getPreviousPriceCents() == null) {
+            return; // Not an edit that affects carts
+        }
+
+        for (CartState state : carts.values()) {
+            synchronized (state) {
+                CartState.Line line = state.getLine(event.getProductId());
+                if (state.isDetached() || line == null) {
+                    continue;
+                }
+                if (product == null) {
+                    state.removeLine(event.getProductId());
+                } else {
+                    if (applyProductEdit(line, product, event.getPreviousPriceCents(), event.getPreviousStock())) {
+                        // The units trimmed off the line are free for other carts
+                        stockReservations.reduce(event.getProductId(), state.getConsumerId(), line.getQuantity());
+                    }
+                }
+                state.touch();
+            }
+        }
+    }
+
+    /**
+     * @return whether the line was trimmed to the new stock
+     */
+    private boolean applyProductEdit(CartState.Line line, Product product, long oldPriceCents, int oldStock) {
+        StringBuilder changeMsg = new StringBuilder();
+        boolean trimmed = false;
+        line.setProductName(product.getName());
+
+        if (oldPriceCents != product.getPriceCents()) {
+            changeMsg.append(oldPriceCents < product.getPriceCents() ? "Price Increased" : "Price Decreased");
+        }
+        if (oldStock != product.getStock() && line.getQuantity() > product.getStock()) {
+            line.setQuantity(product.getStock());
+            changeMsg.append(" | Stock Reduced");
+            trimmed = true;
+        }
+
+        // Recomputed from the new price rather than shifted by a delta, so applying it twice is harmless
+        line.setUnitPriceCents(Money.lineTotal(product.getPriceCents(), line.getQuantity()));
+        if (!changeMsg.isEmpty()) {
+            line.setFieldChange(changeMsg.toString());
+        }
+        return trimmed;
+    }
+
+    private CartState load(int consumerId) {
+        CartState state = carts.get(consumerId);
+        if (state != null) {
+            return state;
+        }
+
+        CartState loaded = CartState.fromOrder(consumerId, orderRepo.findActiveCartByConsumerId(consumerId));
+        CartState existing = carts.putIfAbsent(consumerId, loaded);
+        return existing != null ? existing : loaded;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.finalyearproject.Utility;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One slice of a cursor (keyset) paginated listing.
+ * Pass nextCursor back to fetch the following slice; it is null on the last one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPage<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+
+    // Only filled in when the caller explicitly asks for it
+    private Long totalElements;
+}
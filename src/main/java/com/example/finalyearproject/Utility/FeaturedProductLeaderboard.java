@@ -0,0 +1,178 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory ranking of in-stock products by Bayesian average rating, which pulls products with few ratings
+ * towards the catalog mean so a single 5 star review does not outrank many good ones.
+ * Updated from ProductChangedEvent and reconciled with the database periodically.
+ */
+@Component
+public class FeaturedProductLeaderboard {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeaturedProductLeaderboard.class);
+
+    public static final int SIZE = 10;
+
+    // Weight of the prior, in number of ratings
+    private static final double PRIOR_WEIGHT = 5.0;
+
+    // Prior used until the first reconciliation has computed the catalog mean
+    private static final double DEFAULT_MEAN = 3.0;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    private record Entry(int productId, double totalRating, int ratingCount, boolean inStock, double score) {
+    }
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparing(Comparator.comparingInt(Entry::ratingCount).reversed())
+            .thenComparingInt(Entry::productId);
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    // In-stock products only, best first
+    private final TreeSet<Entry> ranked = new TreeSet<>(RANKING);
+
+    private double mean = DEFAULT_MEAN;
+
+    // Summaries of the current top products, null when they must be reloaded
+    private volatile List<ProductSummaryDTO> featured;
+
+    // Bumped whenever featured is invalidated, so a load that raced with a change is not kept
+    private long featuredVersion;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconcile();
+    }
+
+    /**
+     * Rebuild the ranking from the database, correcting any drift from missed or reordered events
+     */
+    @Scheduled(fixedDelayString = "${featured.reconcile-interval-ms:600000}", initialDelayString = "${featured.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        try {
+            List<Object[]> rows = productRepo.findAllRatingColumns();
+            double totalSum = 0;
+            long countSum = 0;
+            for (Object[] row : rows) {
+                totalSum += row[1] != null ? (Double) row[1] : 0.0;
+                countSum += row[2] != null ? (Integer) row[2] : 0;
+            }
+
+            synchronized (this) {
+                mean = countSum > 0 ? totalSum / countSum : DEFAULT_MEAN;
+                entries.clear();
+                ranked.clear();
+                for (Object[] row : rows) {
+                    Integer stock = (Integer) row[3];
+                    put((Integer) row[0], (Double) row[1], (Integer) row[2], stock != null && stock > 0);
+                }
+                invalidateFeatured();
+            }
+            logger.info("Featured product leaderboard reconciled with {} products", rows.size());
+        } catch (Exception e) {
+            logger.error("Failed to reconcile featured product leaderboard: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        boolean wasFeatured = isFeatured(event.getProductId());
+        Entry previous = entries.remove(event.getProductId());
+        if (previous != null) {
+            ranked.remove(previous);
+        }
+
+        Product product = event.getProduct();
+        if (product != null) {
+            put(product.getProductId(), product.getTotalRating(), product.getRatingCount(), product.getStock() > 0);
+        }
+
+        if (wasFeatured || isFeatured(event.getProductId())) {
+            invalidateFeatured();
+        }
+    }
+
+    /**
+     * The top products, loaded from the database only after the top list itself changed
+     */
+    public List<ProductSummaryDTO> getFeatured() {
+        List<ProductSummaryDTO> current = featured;
+        if (current != null) {
+            return current;
+        }
+
+        List<Integer> topIds;
+        long version;
+        synchronized (this) {
+            topIds = ranked.stream().limit(SIZE).map(Entry::productId).collect(Collectors.toList());
+            version = featuredVersion;
+        }
+
+        Map<Integer, ProductSummaryDTO> byId = topIds.isEmpty() ? Collections.emptyMap()
+                : productRepo.findSummariesByIds(topIds).stream()
+                .collect(Collectors.toMap(ProductSummaryDTO::getProductId, Function.identity()));
+        List<ProductSummaryDTO> result = topIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        synchronized (this) {
+            if (featuredVersion == version) {
+                featured = result;
+            }
+        }
+        return result;
+    }
+
+    // Must be called while synchronized
+    private void put(int productId, Double totalRating, Integer ratingCount, boolean inStock) {
+        double total = totalRating != null ? totalRating : 0.0;
+        int count = ratingCount != null ? ratingCount : 0;
+        double score = (PRIOR_WEIGHT * mean + total) / (PRIOR_WEIGHT + count);
+
+        Entry entry = new Entry(productId, total, count, inStock, score);
+        entries.put(productId, entry);
+        if (inStock) {
+            ranked.add(entry);
+        }
+    }
+
+    // Must be called while synchronized
+    private boolean isFeatured(int productId) {
+        Entry entry = entries.get(productId);
+        if (entry == null || !entry.inStock()) {
+            return false;
+        }
+        Iterator<Entry> top = ranked.iterator();
+        for (int i = 0; i < SIZE && top.hasNext(); i++) {
+            if (top.next().productId() == productId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Must be called while synchronized
+    private void invalidateFeatured() {
+        featuredVersion++;
+        featured = null;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.customExceptions.IdempotencyConflictException;
+import com.example.finalyearproject.customExceptions.InvalidIdempotencyKeyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of write requests sent with an Idempotency-Key header, so a client retrying after a dropped
+ * connection gets the original response instead of adding to the cart or placing the order twice.
+ * A duplicate arriving while the first request is still running waits for its response.
+ * Keys are scoped to the caller and endpoint, kept for a TTL, and the oldest finished ones are dropped past a
+ * maximum count. A key whose request is still running is never dropped, or a retry would run it a second time.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Value("${idempotency.ttl-ms:86400000}")
+    private long ttlMs;
+
+    @Value("${idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    // How long a duplicate waits for the first request before giving up
+    @Value("${idempotency.wait-ms:30000}")
+    private long waitMs;
+
+    private record Entry(String fingerprint, CompletableFuture<ResponseEntity<?>> response, long expiresAt) {
+    }
+
+    // Insertion ordered so the oldest keys are dropped first, guarded by its own monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Run the request once per key
+     *
+     * @param scope       caller and endpoint the key belongs to
+     * @param key         the Idempotency-Key header, the request simply runs when it is null
+     * @param fingerprint the request parameters, a key reused with different ones is rejected
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends ResponseEntity<?>> R execute(String scope, String key, String fingerprint, Supplier<R> request) {
+        if (key == null || key.isBlank()) {
+            return request.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String storeKey = scope + '\n' + key;
+        CompletableFuture<ResponseEntity<?>> own = new CompletableFuture<>();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(storeKey);
+            if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(storeKey); // Re-inserted at the end, keeping the map ordered by expiry
+                entries.put(storeKey, new Entry(fingerprint, own, System.currentTimeMillis() + ttlMs));
+                evictOverflow();
+                entry = null;
+            }
+        }
+
+        if (entry != null) {
+            if (!Objects.equals(entry.fingerprint(), fingerprint)) {
+                throw new IdempotencyConflictException(HEADER + " was already used for a different request");
+            }
+            return (R) replay(awaitFirst(entry));
+        }
+
+        try {
+            R response = request.get();
+            own.complete(response);
+            if (response.getStatusCode().is5xxServerError()) {
+                forget(storeKey, own); // Let the client retry a server failure
+            }
+            return response;
+        } catch (RuntimeException | Error e) {
+            forget(storeKey, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ResponseEntity<?> awaitFirst(Entry entry) {
+        try {
+            return entry.response().get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this " + HEADER + " is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the request with this " + HEADER);
+        } catch (ExecutionException e) {
+            // The first request failed without a response, report it the same way
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ResponseEntity<?> replay(ResponseEntity<?> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private void forget(String storeKey, CompletableFuture<ResponseEntity<?>> response) {
+        synchronized (entries) {
+            Entry entry = entries.get(storeKey);
+            if (entry != null && entry.response() == response) {
+                entries.remove(storeKey);
+            }
+        }
+    }
+
+    /**
+     * Drop the oldest finished or expired entries past maxEntries. Running ones are skipped, so the map can
+     * briefly hold more entries than that, by at most the number of requests in flight.
+     */
+    private void evictOverflow() {
+        Iterator<Entry> it = entries.values().iterator();
+        long now = System.currentTimeMillis();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.response().isDone() || entry.expiresAt() <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                // Ordered by expiry, so the first live entry ends the sweep
+                if (entry.expiresAt() > now) {
+                    break;
+                }
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.finalyearproject.Utility;
+
+/**
+ * Money is stored and computed as whole cents in a long, so sums are exact and need no allocation.
+ * Decimal amounts only exist at the API boundary.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toAmount(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Price of a cart or order line
+     */
+    public static long lineTotal(long unitCents, int quantity) {
+        return Math.multiplyExact(unitCents, (long) quantity);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.finalyearproject.Utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque continuation token for keyset pagination over a consumer's order history.
+ * Encodes the createdAt and orderId of the last order returned as "createdAtMillis|orderId".
+ */
+public final class OrderHistoryCursor {
+
+    private OrderHistoryCursor() {
+    }
+
+    public record Position(Date createdAt, int orderId) {
+    }
+
+    public static String encode(OrderSummaryDTO last) {
+        String raw = last.getCreatedAt().getTime() + "|" + last.getOrderId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null for the first page, when the token is empty
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Position decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new Position(new Date(Long.parseLong(parts[0])), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.OrderStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Order history row, fetched with a single constructor query.
+ * Items, products and the delivery address stay on the single order endpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryDTO {
+    private int orderId;
+    private OrderStatus orderStatus;
+
+    // Whole cents, see Money
+    @JsonIgnore
+    private long totalAmountCents;
+
+    @JsonIgnore
+    private Date createdAt;
+    private Date placedAt;
+    private long itemCount;
+
+    // First uploaded image of the ordered products, null when none has one
+    private String thumbnailUrl;
+
+    @JsonProperty("totalAmount")
+    public double getTotalAmount() {
+        return Money.toAmount(totalAmountCents);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Order;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Handle of an order placement queued in OrderPlacementQueue, polled by the client for the result
+ */
+@Getter
+public class PlacementTicket {
+
+    public enum Status {
+        QUEUED,
+        PLACED,
+        FAILED
+    }
+
+    private final String ticketId = UUID.randomUUID().toString();
+
+    @JsonIgnore
+    private final int consumerId;
+
+    @JsonIgnore
+    private final OrderPlacementDTO placementDTO;
+
+    private volatile Status status = Status.QUEUED;
+
+    // Set once placed, the order is fetched through the order endpoints
+    private volatile Integer orderId;
+
+    private volatile String message = "Order queued for placement";
+    private volatile List<String> errors;
+
+    @JsonIgnore
+    private volatile long completedAt;
+
+    public PlacementTicket(int consumerId, OrderPlacementDTO placementDTO) {
+        this.consumerId = consumerId;
+        this.placementDTO = placementDTO;
+    }
+
+    public void complete(ApiResponse<Order> result) {
+        if (result.getData() != null) {
+            orderId = result.getData().getOrderId();
+            status = Status.PLACED;
+        } else {
+            errors = result.getErrors();
+            status = Status.FAILED;
+        }
+        message = result.getMessage();
+        completedAt = System.currentTimeMillis();
+    }
+
+    @JsonIgnore
+    public boolean isDone() {
+        return status != Status.QUEUED;
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Prefix index over product names for typeahead.
+ * Every word of the name and the full name are stored as "term\u0000productId" keys in a sorted map,
+ * so a prefix lookup is a range scan. Short prefixes match too much of the catalog to scan per
+ * keystroke, so their top results are kept precomputed and patched as products change.
+ */
+@Component
+public class ProductAutocompleteIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductAutocompleteIndex.class);
+
+    private static final char SEPARATOR = '\u0000';
+
+    // Prefixes up to this length are answered from the precomputed top lists
+    private static final int CACHED_PREFIX_LENGTH = 4;
+
+    // Upper bound on keys examined for longer, uncached prefixes
+    private static final int MAX_SCAN = 1000;
+
+    public static final int MAX_LIMIT = 20;
+
+    // Best first: in stock, then best rated, then alphabetical
+    private static final Comparator<ProductSuggestion> RANKING = Comparator
+            .comparing(ProductSuggestion::isInStock, Comparator.reverseOrder())
+            .thenComparing(ProductSuggestion::getAverageRating, Comparator.reverseOrder())
+            .thenComparing(ProductSuggestion::getName)
+            .thenComparingInt(ProductSuggestion::getProductId);
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    private final ConcurrentSkipListMap<String, ProductSuggestion> terms = new ConcurrentSkipListMap<>();
+    private final Map<Integer, ProductSuggestion> suggestions = new ConcurrentHashMap<>();
+
+    // Short prefix -> best MAX_LIMIT suggestions, immutable lists sorted by RANKING
+    private final Map<String, List<ProductSuggestion>> topByPrefix = new ConcurrentHashMap<>();
+
+    private final ProductIndexLoader loader = new ProductIndexLoader();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            loader.load(productRepo::findAllSuggestionColumns, this::install, this::apply);
+        } catch (Exception e) {
+            logger.error("Failed to build product autocomplete index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Until the first build succeeds, typeahead returns no suggestions
+    @Scheduled(fixedDelayString = "${product.index.retry-interval-ms:60000}",
+            initialDelayString = "${product.index.retry-interval-ms:60000}")
+    public void rebuildIfNotReady() {
+        if (!isReady()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replace the contents with rows shaped like ProductRepo.findAllSuggestionColumns
+     */
+    synchronized void install(List<Object[]> rows) {
+        terms.clear();
+        suggestions.clear();
+        // Lists scanned meanwhile may hold products missing from the rows
+        topByPrefix.clear();
+        for (Object[] row : rows) {
+            Double rating = (Double) row[2];
+            Integer stock = (Integer) row[3];
+            ProductSuggestion suggestion = new ProductSuggestion((Integer) row[0], (String) row[1],
+                    rating != null ? rating : 0.0, stock != null && stock > 0);
+            suggestions.put(suggestion.getProductId(), suggestion);
+            for (String term : termsFor(suggestion)) {
+                terms.put(term, suggestion);
+            }
+        }
+        logger.info("Product autocomplete index built with {} products", rows.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        loader.onProductChanged(event, this::apply);
+    }
+
+    private void apply(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            Product product = event.getProduct();
+            Double rating = product.getAverageRating();
+            put(new ProductSuggestion(product.getProductId(), product.getName(),
+                    rating != null ? rating : 0.0, product.getStock() > 0));
+        }
+    }
+
+    public boolean isReady() {
+        return loader.isLoaded();
+    }
+
+    public synchronized void put(ProductSuggestion suggestion) {
+        ProductSuggestion previous = suggestions.put(suggestion.getProductId(), suggestion);
+        List<String> oldTerms = previous != null ? termsFor(previous) : Collections.emptyList();
+        List<String> newTerms = termsFor(suggestion);
+
+        for (String term : oldTerms) {
+            terms.remove(term);
+        }
+        for (String term : newTerms) {
+            terms.put(term, suggestion);
+        }
+        updateTopLists(suggestion.getProductId(), oldTerms, newTerms, suggestion);
+    }
+
+    public synchronized void remove(int productId) {
+        ProductSuggestion previous = suggestions.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        List<String> oldTerms = termsFor(previous);
+        for (String term : oldTerms) {
+            terms.remove(term);
+        }
+        updateTopLists(productId, oldTerms, Collections.emptyList(), null);
+    }
+
+    /**
+     * Best ranked products whose name, or a word in it, starts with the prefix
+     */
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        limit = Math.min(limit, MAX_LIMIT);
+
+        List<ProductSuggestion> top;
+        if (normalized.length() <= CACHED_PREFIX_LENGTH) {
+            top = topByPrefix.get(normalized);
+            if (top == null) {
+                synchronized (this) {
+                    top = topByPrefix.computeIfAbsent(normalized, p -> scan(p, Integer.MAX_VALUE));
+                }
+            }
+        } else {
+            top = scan(normalized, MAX_SCAN);
+        }
+        return top.size() > limit ? top.subList(0, limit) : top;
+    }
+
+    private List<ProductSuggestion> scan(String prefix, int maxScan) {
+        // Heap ordered worst first, so the worst of the current top list is evicted
+        PriorityQueue<ProductSuggestion> heap = new PriorityQueue<>(MAX_LIMIT + 1, RANKING.reversed());
+        Set<Integer> seen = new HashSet<>();
+        int scanned = 0;
+
+        for (ProductSuggestion suggestion : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            if (++scanned > maxScan) {
+                break;
+            }
+            if (!seen.add(suggestion.getProductId())) {
+                continue;
+            }
+            heap.offer(suggestion);
+            if (heap.size() > MAX_LIMIT) {
+                heap.poll();
+            }
+        }
+
+        List<ProductSuggestion> result = new ArrayList<>(heap);
+        result.sort(RANKING);
+        return List.copyOf(result);
+    }
+
+    // Patch the precomputed lists of every short prefix the product appears (or appeared) under
+    private void updateTopLists(int productId, List<String> oldTerms, List<String> newTerms, ProductSuggestion updated) {
+        Set<String> newPrefixes = shortPrefixes(newTerms);
+        Set<String> affected = shortPrefixes(oldTerms);
+        affected.addAll(newPrefixes);
+
+        for (String prefix : affected) {
+            List<ProductSuggestion> current = topByPrefix.get(prefix);
+            if (current == null) {
+                continue; // Not computed yet, will be scanned on first use
+            }
+
+            List<ProductSuggestion> next = new ArrayList<>(current.size() + 1);
+            boolean wasListed = false;
+            for (ProductSuggestion s : current) {
+                if (s.getProductId() == productId) {
+                    wasListed = true;
+                } else {
+                    next.add(s);
+                }
+            }
+
+            // A full list only tells us that unlisted products rank below its last entry
+            boolean complete = current.size() < MAX_LIMIT;
+            boolean listed = false;
+            if (updated != null && newPrefixes.contains(prefix)) {
+                if (complete || RANKING.compare(updated, current.get(current.size() - 1)) < 0) {
+                    int position = Collections.binarySearch(next, updated, RANKING);
+                    next.add(position < 0 ? -position - 1 : position, updated);
+                    if (next.size() > MAX_LIMIT) {
+                        next.remove(next.size() - 1);
+                    }
+                    listed = true;
+                }
+            }
+
+            if (wasListed && !listed && !complete) {
+                // Dropped out of a full list, the next best candidate is unknown without a rescan
+                topByPrefix.remove(prefix);
+            } else {
+                topByPrefix.put(prefix, List.copyOf(next));
+            }
+        }
+    }
+
+    private static Set<String> shortPrefixes(List<String> termKeys) {
+        Set<String> prefixes = new HashSet<>();
+        for (String key : termKeys) {
+            String term = key.substring(0, key.lastIndexOf(SEPARATOR));
+            for (int length = 1; length <= Math.min(CACHED_PREFIX_LENGTH, term.length()); length++) {
+                prefixes.add(term.substring(0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    private static List<String> termsFor(ProductSuggestion suggestion) {
+        Set<String> result = new LinkedHashSet<>();
+        String suffix = SEPARATOR + Integer.toString(suggestion.getProductId());
+        String fullName = normalize(suggestion.getName());
+        if (!fullName.isEmpty()) {
+            result.add(fullName + suffix);
+        }
+        for (String token : ProductSearchIndex.tokenize(suggestion.getName())) {
+            result.add(token + suffix);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Farmer;
+import com.example.finalyearproject.DataStore.Product;
+import com.example.finalyearproject.DataStore.ProductImage;
+import com.example.finalyearproject.DataStore.Rating;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Size bounded, TTL aware read-through cache of products by ID.
+ * Entries are snapshots copied from the entity in their own read-only transaction, never attached to a session,
+ * without the order items and with unmodifiable collections. Callers must treat them as read-only.
+ * Any ProductChangedEvent evicts the product once its transaction commits.
+ */
+@Component
+public class ProductCache {
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate loadTransaction;
+
+    @Value("${product.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${product.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private record Entry(Product product, long expiresAt) {
+    }
+
+    // Access ordered, so the eldest entry is the least recently used one
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Bumped on every invalidation, a load that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        // Separate from the caller's session, so the snapshot never shares state with it
+        loadTransaction = new TransactionTemplate(transactionManager);
+        loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTransaction.setReadOnly(true);
+    }
+
+    /**
+     * The product with this ID, loading it from the database on a miss
+     */
+    public Optional<Product> get(int productId) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(productId);
+            if (entry != null) {
+                if (entry.expiresAt() - now > 0) {
+                    hits.increment();
+                    return Optional.of(entry.product());
+                }
+                entries.remove(productId);
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        Optional<Product> loaded = loadTransaction.execute(status -> productRepo.findById(productId).map(ProductCache::snapshot));
+        loaded.ifPresent(product -> {
+            synchronized (entries) {
+                if (generation.get() == loadGeneration) {
+                    entries.put(productId, new Entry(product, System.nanoTime() + ttlSeconds * 1_000_000_000L));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Copy what the product detail needs out of the managed entity. The order items are left out, they are the
+     * product's whole sales history and nothing read through the cache uses them.
+     */
+    private static Product snapshot(Product source) {
+        Product copy = new Product();
+        copy.setProductId(source.getProductId());
+        copy.setName(source.getName());
+        copy.setDescription(source.getDescription());
+        copy.setPriceCents(source.getPriceCents());
+        copy.setStock(source.getStock());
+        copy.setVersion(source.getVersion());
+        copy.setHarvestDate(source.getHarvestDate());
+        copy.setAvailableFromDate(source.getAvailableFromDate());
+        copy.setOrganic(source.isOrganic());
+        copy.setCategory(source.getCategory());
+        copy.setTotalRating(source.getTotalRating());
+        copy.setRatingCount(source.getRatingCount());
+        copy.setAverageRating(source.getAverageRating());
+        copy.setOneStarCount(source.getOneStarCount());
+        copy.setTwoStarCount(source.getTwoStarCount());
+        copy.setThreeStarCount(source.getThreeStarCount());
+        copy.setFourStarCount(source.getFourStarCount());
+        copy.setFiveStarCount(source.getFiveStarCount());
+
+        // Only the owner's identity, used for ownership checks
+        Farmer farmer = new Farmer();
+        farmer.setFarmerId(source.getFarmer().getFarmerId());
+        farmer.setFarmerEmail(source.getFarmer().getFarmerEmail());
+        farmer.setFirstName(source.getFarmer().getFirstName());
+        farmer.setLastName(source.getFarmer().getLastName());
+        copy.setFarmer(farmer);
+
+        Set<ProductImage> images = source.getImages().stream().map(image -> {
+            ProductImage imageCopy = new ProductImage();
+            imageCopy.setId(image.getId());
+            imageCopy.setFilename(image.getFilename());
+            imageCopy.setFilePath(image.getFilePath());
+            imageCopy.setProduct(copy);
+            return imageCopy;
+        }).collect(Collectors.toSet());
+        copy.setImages(Collections.unmodifiableSet(images));
+
+        Set<Rating> ratings = source.getRatings().stream().map(rating -> {
+            Rating ratingCopy = new Rating();
+            ratingCopy.setRatingId(rating.getRatingId());
+            ratingCopy.setScore(rating.getScore());
+            ratingCopy.setComment(rating.getComment());
+            ratingCopy.setTimestamp(rating.getTimestamp());
+            ratingCopy.setProduct(copy);
+            return ratingCopy;
+        }).collect(Collectors.toSet());
+        copy.setRatings(Collections.unmodifiableSet(ratings));
+
+        copy.setOrderItems(Collections.emptySet());
+        return copy;
+    }
+
+    public void invalidate(int productId) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(productId);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.getProductId());
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Product;
+import lombok.Getter;
+
+/**
+ * Published whenever a product is created, modified or deleted so that the
+ * in-memory product indexes and the product cache can update themselves once the transaction commits.
+ */
+@Getter
+public class ProductChangedEvent {
+    private final int productId;
+
+    // Null when the product was deleted
+    private final Product product;
+
+    // Price and stock before a farmer edited the product, null for any other change
+    private final Long previousPriceCents;
+    private final Integer previousStock;
+
+    private ProductChangedEvent(int productId, Product product, Long previousPriceCents, Integer previousStock) {
+        this.productId = productId;
+        this.product = product;
+        this.previousPriceCents = previousPriceCents;
+        this.previousStock = previousStock;
+    }
+
+    public static ProductChangedEvent saved(Product product) {
+        return new ProductChangedEvent(product.getProductId(), product, null, null);
+    }
+
+    public static ProductChangedEvent edited(Product product, long previousPriceCents, int previousStock) {
+        return new ProductChangedEvent(product.getProductId(), product, previousPriceCents, previousStock);
+    }
+
+    public static ProductChangedEvent deleted(int productId) {
+        return new ProductChangedEvent(productId, null, null, null);
+    }
+
+    public boolean isDeleted() {
+        return product == null;
+    }
+}
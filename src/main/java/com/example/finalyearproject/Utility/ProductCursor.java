@@ -0,0 +1,103 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Product;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opaque continuation token for keyset pagination over products.
+ * Encodes the sort option, the last productId and the last sort key as "sortBy|productId|key".
+ */
+public final class ProductCursor {
+
+    private ProductCursor() {
+    }
+
+    /**
+     * Sort for keyset mode, always ending with productId so the order is total
+     */
+    public static Sort sortFor(String sortBy) {
+        return switch (normalize(sortBy)) {
+            case "price_asc" -> Sort.by(Sort.Direction.ASC, "priceCents", "productId");
+            case "price_desc" -> Sort.by(Sort.Direction.DESC, "priceCents", "productId");
+            case "name_asc" -> Sort.by(Sort.Direction.ASC, "name", "productId");
+            case "name_desc" -> Sort.by(Sort.Direction.DESC, "name", "productId");
+            case "date_asc" -> Sort.by(Sort.Direction.ASC, "availableFromDate", "productId");
+            case "date_desc" -> Sort.by(Sort.Direction.DESC, "availableFromDate", "productId");
+            default -> Sort.by(Sort.Direction.DESC, "productId");
+        };
+    }
+
+    public static boolean sortsByDate(String sortBy) {
+        return normalize(sortBy).startsWith("date_");
+    }
+
+    public static String encode(String sortBy, Product last) {
+        String sort = normalize(sortBy);
+        String key = switch (sort) {
+            case "price_asc", "price_desc" -> Long.toString(last.getPriceCents());
+            case "name_asc", "name_desc" -> last.getName();
+            case "date_asc", "date_desc" -> last.getAvailableFromDate().toString();
+            default -> "";
+        };
+        String raw = sort + "|" + last.getProductId() + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token into the keyset position to continue from, or the first position when the token is empty
+     *
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort option
+     */
+    public static KeysetScrollPosition decode(String cursor, String sortBy) {
+        if (cursor == null || cursor.isEmpty()) {
+            return ScrollPosition.keyset();
+        }
+
+        String sort = normalize(sortBy);
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[0].equals(sort)) {
+            throw new IllegalArgumentException("Cursor was issued for sort '" + parts[0] + "', not '" + sort + "'");
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            switch (sort) {
+                case "price_asc", "price_desc" -> keys.put("priceCents", Long.parseLong(parts[2]));
+                case "name_asc", "name_desc" -> keys.put("name", parts[2]);
+                case "date_asc", "date_desc" -> keys.put("availableFromDate", LocalDate.parse(parts[2]));
+                default -> {
+                }
+            }
+            keys.put("productId", Integer.parseInt(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String normalize(String sortBy) {
+        if (sortBy == null) {
+            return "default";
+        }
+        return switch (sortBy) {
+            case "price_asc", "price_desc", "name_asc", "name_desc", "date_asc", "date_desc" -> sortBy;
+            default -> "default";
+        };
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.CategoryType;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Columnar in-memory copy of the filterable product attributes, indexed by product ID.
+ * Lets /product/filter compute every facet count in a single pass instead of one COUNT query per facet value.
+ */
+@Component
+public class ProductFacetIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    // Lower bounds of the price buckets, the last bucket is open ended
+    private static final double[] PRICE_BUCKETS = {0, 50, 100, 250, 500};
+    private static final String[] PRICE_BUCKET_LABELS = {"0-50", "50-100", "100-250", "250-500", "500+"};
+
+    private static final int[] STOCK_BUCKETS = {0, 1, 11, 51};
+    private static final String[] STOCK_BUCKET_LABELS = {"out_of_stock", "1-10", "11-50", "51+"};
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Columns, position = productId
+    private final BitSet present = new BitSet();
+    private final BitSet organic = new BitSet();
+    private byte[] categories = new byte[1024];
+    private double[] prices = new double[1024];
+    private int[] stocks = new int[1024];
+    private long[] availableFromDays = new long[1024];
+
+    private final ProductIndexLoader loader = new ProductIndexLoader();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            loader.load(productRepo::findAllFacetColumns, this::install, this::apply);
+        } catch (Exception e) {
+            logger.error("Failed to build product facet index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Until the first build succeeds, /product/filter returns no facets
+    @Scheduled(fixedDelayString = "${product.index.retry-interval-ms:60000}",
+            initialDelayString = "${product.index.retry-interval-ms:60000}")
+    public void rebuildIfNotReady() {
+        if (!isReady()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Replace the contents with rows shaped like ProductRepo.findAllFacetColumns
+     */
+    void install(List<Object[]> rows) {
+        lock.writeLock().lock();
+        try {
+            present.clear();
+            organic.clear();
+            for (Object[] row : rows) {
+                put((Integer) row[0], (CategoryType) row[1], (Boolean) row[2],
+                        Money.toAmount((Long) row[3]), (Integer) row[4], (LocalDate) row[5]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product facet index built with {} products", rows.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        loader.onProductChanged(event, this::apply);
+    }
+
+    private void apply(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.isDeleted()) {
+                clear(event.getProductId());
+            } else {
+                Product product = event.getProduct();
+                put(product.getProductId(), product.getCategory(), product.isOrganic(),
+                        product.getPrice(), product.getStock(), product.getAvailableFromDate());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return loader.isLoaded();
+    }
+
+    /**
+     * Count category, organic, price and stock facets for the products matching the filter.
+     *
+     * @param matchingIds product IDs matching the text query, or null when there is no text query
+     */
+    public ProductFacets countFacets(ProductFilterDTO filter, Set<Integer> matchingIds) {
+        CategoryType categoryFilter = parseCategory(filter.getCategory());
+        long fromDay = toEpochDay(filter.getAvailableFrom());
+        long toDay = toEpochDay(filter.getAvailableTo());
+
+        long[] categoryCounts = new long[CategoryType.values().length];
+        long organicYes = 0;
+        long organicNo = 0;
+        long[] priceCounts = new long[PRICE_BUCKETS.length];
+        long[] stockCounts = new long[STOCK_BUCKETS.length];
+
+        lock.readLock().lock();
+        try {
+            PrimitiveIterator.OfInt ids = matchingIds != null
+                    ? matchingIds.stream().mapToInt(Integer::intValue).sorted().iterator()
+                    : present.stream().iterator();
+
+            while (ids.hasNext()) {
+                int id = ids.nextInt();
+                if (!present.get(id)) {
+                    continue;
+                }
+
+                int category = categories[id];
+                boolean isOrganic = organic.get(id);
+                double price = prices[id];
+                int stock = stocks[id];
+
+                boolean categoryOk = categoryFilter == null || category == categoryFilter.ordinal();
+                boolean organicOk = filter.getOrganic() == null || filter.getOrganic() == isOrganic;
+                boolean priceOk = (filter.getMinPrice() == null || price >= filter.getMinPrice())
+                        && (filter.getMaxPrice() == null || price <= filter.getMaxPrice());
+                boolean stockOk = (filter.getMinStock() == null || stock >= filter.getMinStock())
+                        && (filter.getMaxStock() == null || stock <= filter.getMaxStock());
+                boolean dateOk = dateMatches(availableFromDays[id], fromDay, toDay);
+
+                if (!dateOk) {
+                    continue;
+                }
+                if (organicOk && priceOk && stockOk && category >= 0) {
+                    categoryCounts[category]++;
+                }
+                if (categoryOk && priceOk && stockOk) {
+                    if (isOrganic) {
+                        organicYes++;
+                    } else {
+                        organicNo++;
+                    }
+                }
+                if (categoryOk && organicOk && stockOk) {
+                    priceCounts[priceBucket(price)]++;
+                }
+                if (categoryOk && organicOk && priceOk) {
+                    stockCounts[stockBucket(stock)]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<String, Long> categoryFacet = new LinkedHashMap<>();
+        for (CategoryType type : CategoryType.values()) {
+            categoryFacet.put(type.name(), categoryCounts[type.ordinal()]);
+        }
+
+        Map<String, Long> organicFacet = new LinkedHashMap<>();
+        organicFacet.put("true", organicYes);
+        organicFacet.put("false", organicNo);
+
+        Map<String, Long> priceFacet = new LinkedHashMap<>();
+        for (int i = 0; i < PRICE_BUCKET_LABELS.length; i++) {
+            priceFacet.put(PRICE_BUCKET_LABELS[i], priceCounts[i]);
+        }
+
+        Map<String, Long> stockFacet = new LinkedHashMap<>();
+        for (int i = 0; i < STOCK_BUCKET_LABELS.length; i++) {
+            stockFacet.put(STOCK_BUCKET_LABELS[i], stockCounts[i]);
+        }
+
+        return new ProductFacets(categoryFacet, organicFacet, priceFacet, stockFacet);
+    }
+
+    // Must be called with the write lock held
+    private void put(int id, CategoryType category, Boolean isOrganic, Double price, Integer stock, LocalDate availableFrom) {
+        ensureCapacity(id);
+        present.set(id);
+        categories[id] = (byte) (category != null ? category.ordinal() : -1);
+        organic.set(id, Boolean.TRUE.equals(isOrganic));
+        prices[id] = price != null ? price : 0;
+        stocks[id] = stock != null ? stock : 0;
+        availableFromDays[id] = availableFrom != null ? availableFrom.toEpochDay() : NO_DATE;
+    }
+
+    // Must be called with the write lock held
+    private void clear(int id) {
+        present.clear(id);
+        organic.clear(id);
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < prices.length) {
+            return;
+        }
+        int newLength = Math.max(prices.length * 2, id + 1);
+        categories = Arrays.copyOf(categories, newLength);
+        prices = Arrays.copyOf(prices, newLength);
+        stocks = Arrays.copyOf(stocks, newLength);
+        availableFromDays = Arrays.copyOf(availableFromDays, newLength);
+    }
+
+    private static boolean dateMatches(long day, long fromDay, long toDay) {
+        if (fromDay == NO_DATE && toDay == NO_DATE) {
+            return true;
+        }
+        if (day == NO_DATE) {
+            return false;
+        }
+        return (fromDay == NO_DATE || day >= fromDay) && (toDay == NO_DATE || day <= toDay);
+    }
+
+    private static int priceBucket(double price) {
+        for (int i = PRICE_BUCKETS.length - 1; i > 0; i--) {
+            if (price >= PRICE_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static int stockBucket(int stock) {
+        for (int i = STOCK_BUCKETS.length - 1; i > 0; i--) {
+            if (stock >= STOCK_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static CategoryType parseCategory(String category) {
+        if (category == null || category.isEmpty()) {
+            return null;
+        }
+        try {
+            return CategoryType.valueOf(category.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null; // Invalid category, ignored like in ProductSpecification
+        }
+    }
+
+    private static long toEpochDay(Date date) {
+        return date != null ? date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay() : NO_DATE;
+    }
+}
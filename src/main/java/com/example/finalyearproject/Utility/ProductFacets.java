@@ -0,0 +1,21 @@
+package com.example.finalyearproject.Utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Result counts for the storefront sidebar. Each facet is counted with every
+ * other active filter applied, but not its own, so the sidebar can show the alternatives.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacets {
+    private Map<String, Long> categories;
+    private Map<String, Long> organic;
+    private Map<String, Long> priceRanges;
+    private Map<String, Long> stockRanges;
+}
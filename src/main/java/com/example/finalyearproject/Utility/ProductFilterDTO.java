@@ -10,6 +10,9 @@ public class ProductFilterDTO {
     // Search text
     private String query;
 
+    // Tolerate small typos in the search text
+    private Boolean fuzzy = false;
+
     // Category filter
     private String category;
 
@@ -39,4 +42,11 @@ public class ProductFilterDTO {
     // Pagination
     private Integer page = 0;
     private Integer size = 10;
+
+    // Cursor (keyset) pagination, used by /product/filter/scroll instead of page
+    private String cursor;
+    private Boolean includeTotal = false;
+
+    // Also return category, organic, price and stock counts for the sidebar
+    private Boolean includeFacets = false;
 }
\ No newline at end of file
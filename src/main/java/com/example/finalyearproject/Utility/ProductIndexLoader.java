@@ -0,0 +1,66 @@
+package com.example.finalyearproject.Utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Loads an in-memory product index from the database without losing the ProductChangedEvents that commit
+ * while the rows are read. The server accepts requests before the index is loaded, so events keep being
+ * applied during a load, and are also buffered and replayed on top of the loaded rows, which may be older.
+ * Every event and the install of the rows go through this object's monitor, so they never interleave.
+ */
+public class ProductIndexLoader {
+
+    // Events applied since the running load started, null when no load is running
+    private List<ProductChangedEvent> buffered;
+
+    private volatile boolean loaded = false;
+
+    /**
+     * Apply the event to the index, and again after the running load if there is one
+     */
+    public synchronized void onProductChanged(ProductChangedEvent event, Consumer<ProductChangedEvent> apply) {
+        apply.accept(event);
+        if (buffered != null) {
+            buffered.add(event);
+        }
+    }
+
+    /**
+     * Read the rows outside the monitor, then replace the index contents with them and replay the events
+     * that arrived meanwhile. Failures are thrown to the caller, leaving the index as it was.
+     *
+     * @param install clears the index and fills it from the rows
+     * @return false when another load was already running
+     */
+    public <T> boolean load(Supplier<T> query, Consumer<T> install, Consumer<ProductChangedEvent> apply) {
+        synchronized (this) {
+            if (buffered != null) {
+                return false;
+            }
+            buffered = new ArrayList<>();
+        }
+        try {
+            T rows = query.get();
+            synchronized (this) {
+                install.accept(rows);
+                buffered.forEach(apply);
+                loaded = true;
+            }
+            return true;
+        } finally {
+            synchronized (this) {
+                buffered = null;
+            }
+        }
+    }
+
+    /**
+     * Whether a load has completed, indexes retry loading until it has
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Product;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+
+/**
+ * A page of products that can carry extra listing metadata.
+ * Serializes exactly like a regular Page when no metadata is set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductPage extends PageImpl<Product> {
+
+    private final ProductFacets facets;
+
+    // Seed of the random feed, pass it back to get the next page of the same ordering.
+    // Sent as a string, JavaScript numbers cannot hold every 64 bit seed exactly
+    private final Long seed;
+
+    public ProductPage(Page<Product> page, ProductFacets facets) {
+        this(page, facets, null);
+    }
+
+    public ProductPage(Page<Product> page, ProductFacets facets, Long seed) {
+        super(page.getContent(), page.getPageable(), page.getTotalElements());
+        this.facets = facets;
+        this.seed = seed;
+    }
+
+    public ProductFacets getFacets() {
+        return facets;
+    }
+
+    public String getSeed() {
+        return seed != null ? Long.toString(seed) : null;
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over product names and descriptions.
+ * Lookups return matching product IDs; callers hydrate the products from the database.
+ * A trigram index over the indexed words backs the typo tolerant (fuzzy) lookups.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    // token -> product IDs, sorted so that prefix lookups are a range scan
+    private final ConcurrentSkipListMap<String, Set<Integer>> nameIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Set<Integer>> textIndex = new ConcurrentSkipListMap<>();
+
+    // trigram -> indexed words containing it, words are padded as "$word$"
+    private final Map<String, Set<String>> gramIndex = new ConcurrentHashMap<>();
+
+    // product ID -> tokens currently indexed for it, needed to unindex on update/delete
+    private final Map<Integer, IndexedProduct> indexedProducts = new ConcurrentHashMap<>();
+
+    private final ProductIndexLoader loader = new ProductIndexLoader();
+
+    private record IndexedProduct(Set<String> nameTokens, Set<String> textTokens) {
+    }
+
+    /**
+     * Load every product once the application has started
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            loader.load(productRepo::findAllSearchableText, rows -> {
+                synchronized (this) {
+                    nameIndex.clear();
+                    textIndex.clear();
+                    gramIndex.clear();
+                    indexedProducts.clear();
+                    for (Object[] row : rows) {
+                        index((Integer) row[0], (String) row[1], (String) row[2]);
+                    }
+                }
+                logger.info("Product search index built with {} products and {} tokens", rows.size(), textIndex.size());
+            }, this::apply);
+        } catch (Exception e) {
+            logger.error("Failed to build product search index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Until the first build succeeds, searches fall back to the database
+    @Scheduled(fixedDelayString = "${product.index.retry-interval-ms:60000}",
+            initialDelayString = "${product.index.retry-interval-ms:60000}")
+    public void rebuildIfNotReady() {
+        if (!isReady()) {
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        loader.onProductChanged(event, this::apply);
+    }
+
+    private void apply(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            remove(event.getProductId());
+        } else {
+            Product product = event.getProduct();
+            index(product.getProductId(), product.getName(), product.getDescription());
+        }
+    }
+
+    public boolean isReady() {
+        return loader.isLoaded();
+    }
+
+    public synchronized void index(int productId, String name, String description) {
+        Set<String> nameTokens = new HashSet<>(tokenize(name));
+        Set<String> textTokens = new HashSet<>(nameTokens);
+        textTokens.addAll(tokenize(description));
+
+        IndexedProduct previous = indexedProducts.get(productId);
+        if (previous != null && previous.nameTokens().equals(nameTokens) && previous.textTokens().equals(textTokens)) {
+            return; // Nothing searchable changed (e.g. a price or stock update)
+        }
+        remove(productId);
+
+        for (String token : nameTokens) {
+            nameIndex.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(productId);
+        }
+        for (String token : textTokens) {
+            textIndex.computeIfAbsent(token, k -> {
+                for (String gram : trigrams(k)) {
+                    gramIndex.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(k);
+                }
+                return ConcurrentHashMap.newKeySet();
+            }).add(productId);
+        }
+        indexedProducts.put(productId, new IndexedProduct(nameTokens, textTokens));
+    }
+
+    public synchronized void remove(int productId) {
+        IndexedProduct previous = indexedProducts.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        unindex(nameIndex, previous.nameTokens(), productId);
+        for (String token : unindex(textIndex, previous.textTokens(), productId)) {
+            for (String gram : trigrams(token)) {
+                Set<String> words = gramIndex.get(gram);
+                if (words != null) {
+                    words.remove(token);
+                    if (words.isEmpty()) {
+                        gramIndex.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Products whose name or description contains every word of the query (prefix match per word)
+     */
+    public Set<Integer> search(String query) {
+        return lookup(textIndex, query);
+    }
+
+    /**
+     * Products whose name contains every word of the query (prefix match per word)
+     */
+    public Set<Integer> searchByName(String query) {
+        return lookup(nameIndex, query);
+    }
+
+    /**
+     * Like search, but each query word also matches indexed words within a small edit distance,
+     * so "tomatoe" finds "tomato" and "brinjal" finds "brinjals"
+     */
+    public Set<Integer> fuzzySearch(String query) {
+        return lookup(textIndex, query, true);
+    }
+
+    /**
+     * Like searchByName, with the same typo tolerance as fuzzySearch
+     */
+    public Set<Integer> fuzzySearchByName(String query) {
+        return lookup(nameIndex, query, true);
+    }
+
+    private Set<Integer> lookup(ConcurrentSkipListMap<String, Set<Integer>> index, String query) {
+        return lookup(index, query, false);
+    }
+
+    private Set<Integer> lookup(ConcurrentSkipListMap<String, Set<Integer>> index, String query, boolean fuzzy) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<Integer> result = null;
+        for (String token : queryTokens) {
+            Set<Integer> matches = new HashSet<>();
+            for (Set<Integer> ids : index.subMap(token, true, token + Character.MAX_VALUE, true).values()) {
+                matches.addAll(ids);
+            }
+            if (fuzzy) {
+                for (String word : similarWords(token)) {
+                    Set<Integer> ids = index.get(word);
+                    if (ids != null) {
+                        matches.addAll(ids);
+                    }
+                }
+            }
+
+            if (result == null) {
+                result = matches;
+            } else {
+                result.retainAll(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indexed words within maxEdits(token) edits of the token. Candidates are the words sharing
+     * enough trigrams with it (each edit changes at most three), verified with a bounded edit distance.
+     */
+    private List<String> similarWords(String token) {
+        int maxEdits = maxEdits(token);
+        if (maxEdits == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> grams = trigrams(token);
+        int minShared = Math.max(1, grams.size() - 3 * maxEdits);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> words = gramIndex.get(gram);
+            if (words != null) {
+                for (String word : words) {
+                    shared.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String word = entry.getKey();
+            if (entry.getValue() >= minShared
+                    && Math.abs(word.length() - token.length()) <= maxEdits
+                    && editDistance(token, word, maxEdits) <= maxEdits) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    // Short words get no tolerance, otherwise almost everything would match
+    private static int maxEdits(String token) {
+        if (token.length() < 4) {
+            return 0;
+        }
+        return token.length() < 8 ? 1 : 2;
+    }
+
+    private static List<String> trigrams(String word) {
+        String padded = "$" + word + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Levenshtein distance, giving up with max + 1 as soon as it must exceed max
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // Returns the tokens that no longer have any product
+    private List<String> unindex(Map<String, Set<Integer>> index, Set<String> tokens, int productId) {
+        List<String> emptied = new ArrayList<>();
+        for (String token : tokens) {
+            Set<Integer> ids = index.get(token);
+            if (ids != null) {
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    index.remove(token);
+                    emptied.add(token);
+                }
+            }
+        }
+        return emptied;
+    }
+
+    /**
+     * Lower-cases the text and splits it into alphanumeric words
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.finalyearproject.Utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Lightweight autocomplete entry, small enough to serve without loading the product
+ */
+@Getter
+@AllArgsConstructor
+public class ProductSuggestion {
+    private final int productId;
+    private final String name;
+    private final double averageRating;
+    private final boolean inStock;
+}
@@ -0,0 +1,35 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.CategoryType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Product card for list endpoints, fetched with a single constructor query.
+ * Descriptions, ratings and the full image list stay on the single product endpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummaryDTO {
+    private int productId;
+    private String name;
+
+    // Whole cents, see Money
+    @JsonIgnore
+    private long priceCents;
+    private int stock;
+    private CategoryType category;
+    private Double averageRating;
+
+    // First uploaded image, null when the product has none
+    private String primaryImageUrl;
+
+    @JsonProperty("price")
+    public double getPrice() {
+        return Money.toAmount(priceCents);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stateless random ordering of the in-stock products.
+ * All users share one sorted array of in-stock product IDs; a seed picks a pseudo random permutation
+ * of its positions (a Feistel network, so it is a bijection), which makes any page computable on any node
+ * from the seed alone.
+ */
+@Component
+public class RandomProductFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(RandomProductFeed.class);
+
+    private static final int ROUNDS = 4;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    // Sorted, replaced as a whole on every change so readers never see a partial update
+    private volatile int[] availableIds = new int[0];
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            List<Integer> ids = productRepo.findAllAvailableProductIds();
+            int[] sorted = ids.stream().mapToInt(Integer::intValue).sorted().toArray();
+            synchronized (this) {
+                availableIds = sorted;
+            }
+            logger.info("Random product feed built with {} products", sorted.length);
+        } catch (Exception e) {
+            logger.error("Failed to build random product feed: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        setAvailable(event.getProductId(), product != null && product.getStock() > 0);
+    }
+
+    public synchronized void setAvailable(int productId, boolean available) {
+        int[] current = availableIds;
+        int position = Arrays.binarySearch(current, productId);
+        if (available && position < 0) {
+            int insertAt = -position - 1;
+            int[] next = new int[current.length + 1];
+            System.arraycopy(current, 0, next, 0, insertAt);
+            next[insertAt] = productId;
+            System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+            availableIds = next;
+        } else if (!available && position >= 0) {
+            int[] next = new int[current.length - 1];
+            System.arraycopy(current, 0, next, 0, position);
+            System.arraycopy(current, position + 1, next, position, next.length - position);
+            availableIds = next;
+        }
+    }
+
+    public int size() {
+        return availableIds.length;
+    }
+
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Product IDs at positions [page * size, page * size + size) of the permutation chosen by the seed
+     */
+    public List<Integer> getPageOfIds(long seed, int page, int size) {
+        int[] ids = availableIds;
+        long start = (long) page * size;
+        if (size <= 0 || start >= ids.length) {
+            return Collections.emptyList();
+        }
+
+        int end = (int) Math.min(start + size, ids.length);
+        List<Integer> result = new ArrayList<>(end - (int) start);
+        for (int index = (int) start; index < end; index++) {
+            result.add(ids[permute(index, ids.length, seed)]);
+        }
+        return result;
+    }
+
+    /**
+     * Maps index to a distinct position in [0, n). The Feistel network permutes [0, 2^bits), and values
+     * that land outside [0, n) are fed through again (cycle walking) until they fall inside.
+     */
+    static int permute(int index, int n, long seed) {
+        int halfBits = Math.max(1, (32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1)) + 1) / 2);
+        long mask = (1L << halfBits) - 1;
+
+        long value = index;
+        do {
+            long left = value >>> halfBits;
+            long right = value & mask;
+            for (int round = 0; round < ROUNDS; round++) {
+                long mixed = left ^ (mix(right ^ seed ^ ((long) round << 56)) & mask);
+                left = right;
+                right = mixed;
+            }
+            value = (left << halfBits) | right;
+        } while (value >= n);
+        return (int) value;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.FarmerRepo;
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+
+/**
+ * Recomputes the exact rating aggregates of products and farmers, and the star counts of products, from the
+ * rating table, correcting any drift of the incremental updates. IDs are split into ranges recomputed in
+ * parallel, each range in its own short transaction so no lock is held on the whole table.
+ */
+@Component
+public class RatingAggregateReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RatingAggregateReconciler.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private FarmerRepo farmerRepo;
+
+    @Value("${rating.reconcile.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${rating.reconcile.parallelism:4}")
+    private int parallelism;
+
+    private ExecutorService chunkPool;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        chunkPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "rating-reconcile-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        chunkPool.shutdownNow();
+    }
+
+    // The first run shortly after startup also fills in aggregates of columns added since the last deploy
+    @Scheduled(initialDelayString = "${rating.reconcile.initial-delay-ms:60000}",
+            fixedDelayString = "${rating.reconcile.interval-ms:3600000}")
+    public void reconcile() {
+        try {
+            long start = System.currentTimeMillis();
+            int products = recomputeInChunks(productRepo.findMaxProductId(), productRepo::recomputeRatingAggregates);
+            int farmers = recomputeInChunks(farmerRepo.findMaxFarmerId(), farmerRepo::recomputeRatingAggregates);
+            logger.info("Reconciled rating aggregates of {} products and {} farmers in {} ms",
+                    products, farmers, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Failed to reconcile rating aggregates: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Run the recompute over [1, maxId] in chunkSize ranges on the pool
+     *
+     * @param recompute (fromId, toId) -> rows updated
+     * @return total rows updated
+     */
+    private int recomputeInChunks(int maxId, BinaryOperator<Integer> recompute) throws Exception {
+        List<Future<Integer>> chunks = new ArrayList<>();
+        for (int fromId = 1; fromId <= maxId; fromId += chunkSize) {
+            int from = fromId;
+            int to = (int) Math.min((long) fromId + chunkSize - 1, maxId);
+            chunks.add(chunkPool.submit(() -> recompute.apply(from, to)));
+        }
+
+        int updated = 0;
+        for (Future<Integer> chunk : chunks) {
+            updated += chunk.get();
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.OrderStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Whether one item of an order can be rated, and the consumer's existing rating of its product if any
+ */
+@Data
+@NoArgsConstructor
+public class RatingEligibilityDTO {
+    private int orderItemId;
+    private Integer productId;
+    private boolean canRate;
+
+    // The consumer's rating of the product, from this or another order, to offer editing it instead
+    private Integer ratingId;
+
+    // Used by the constructor query, same rules as RatingServices.addRating
+    public RatingEligibilityDTO(int orderItemId, Integer productId, OrderStatus orderStatus, boolean rated, Integer ratingId) {
+        this.orderItemId = orderItemId;
+        this.productId = productId;
+        this.canRate = orderStatus == OrderStatus.COMPLETED && !rated && ratingId == null;
+        this.ratingId = ratingId;
+    }
+}
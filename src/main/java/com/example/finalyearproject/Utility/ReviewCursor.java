@@ -0,0 +1,72 @@
+package com.example.finalyearproject.Utility;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination over a product's reviews.
+ * Encodes the sort option, the last ratingId and the last sort key as "sortBy|ratingId|key".
+ */
+public final class ReviewCursor {
+
+    public static final String NEWEST = "newest";
+    public static final String HIGHEST = "highest";
+    public static final String LOWEST = "lowest";
+
+    private ReviewCursor() {
+    }
+
+    /**
+     * Position to continue after; timestamp is only set for newest, score for the other sorts
+     */
+    public record Position(int ratingId, LocalDateTime timestamp, int score) {
+    }
+
+    public static String normalize(String sortBy) {
+        if (HIGHEST.equals(sortBy) || LOWEST.equals(sortBy)) {
+            return sortBy;
+        }
+        return NEWEST;
+    }
+
+    public static String encode(String sortBy, ReviewDTO last) {
+        String sort = normalize(sortBy);
+        String key = NEWEST.equals(sort) ? last.getTimestamp().toString() : Integer.toString(last.getScore());
+        String raw = sort + "|" + last.getRatingId() + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null for the first page, when the token is empty
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort option
+     */
+    public static Position decode(String cursor, String sortBy) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+
+        String sort = normalize(sortBy);
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[0].equals(sort)) {
+            throw new IllegalArgumentException("Cursor was issued for sort '" + parts[0] + "', not '" + sort + "'");
+        }
+
+        try {
+            int ratingId = Integer.parseInt(parts[1]);
+            return NEWEST.equals(sort)
+                    ? new Position(ratingId, LocalDateTime.parse(parts[2]), 0)
+                    : new Position(ratingId, null, Integer.parseInt(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
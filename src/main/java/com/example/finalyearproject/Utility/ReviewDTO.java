@@ -0,0 +1,20 @@
+package com.example.finalyearproject.Utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A product review as listed on the product page, fetched with a single constructor query
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewDTO {
+    private int ratingId;
+    private int score;
+    private String comment;
+    private LocalDateTime timestamp;
+}
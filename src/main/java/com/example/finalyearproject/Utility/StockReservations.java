@@ -0,0 +1,298 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+/**
+ * Time-limited stock holds placed by carts.
+ * Adding to a cart holds the quantity against an in-memory counter of the product, so other carts cannot
+ * be promised the same units and checkouts rarely fail on stock. Holds expire after a TTL, and the counters
+ * follow Product.stock through ProductChangedEvent and a periodic reconciliation.
+ * Counters are spread over shards with their own lock, so carts holding different products do not contend.
+ */
+@Component
+public class StockReservations {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservations.class);
+
+    private static final int SHARDS = 64;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Value("${stock.reservation.ttl-ms:900000}")
+    private long ttlMs;
+
+    private record Hold(int quantity, long expiresAt) {
+    }
+
+    private static class Counter {
+        // Product.stock and Product.version the counter was last synced with
+        int stock;
+        long version;
+
+        // Sum of the live holds
+        int held;
+
+        // consumerId -> hold
+        final Map<Integer, Hold> holds = new HashMap<>();
+
+        Counter(int stock) {
+            this.stock = stock;
+        }
+
+        int availableTo(int consumerId) {
+            Hold own = holds.get(consumerId);
+            return stock - held + (own != null ? own.quantity() : 0);
+        }
+
+        void put(int consumerId, Hold hold) {
+            Hold previous = holds.put(consumerId, hold);
+            held += hold.quantity() - (previous != null ? previous.quantity() : 0);
+        }
+
+        void remove(int consumerId) {
+            Hold previous = holds.remove(consumerId);
+            if (previous != null) {
+                held -= previous.quantity();
+            }
+        }
+
+        void expire(long now) {
+            Iterator<Hold> it = holds.values().iterator();
+            while (it.hasNext()) {
+                Hold hold = it.next();
+                if (hold.expiresAt() <= now) {
+                    held -= hold.quantity();
+                    it.remove();
+                }
+            }
+        }
+
+        void sync(int stock, long version) {
+            if (version >= this.version) {
+                this.stock = stock;
+                this.version = version;
+            }
+        }
+    }
+
+    // Each shard maps productId -> counter and is guarded by its own monitor
+    private final List<Map<Integer, Counter>> shards = new ArrayList<>(SHARDS);
+
+    public StockReservations() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new HashMap<>());
+        }
+    }
+
+    private Map<Integer, Counter> shard(int productId) {
+        return shards.get(Math.floorMod(productId * 0x9E3779B9, SHARDS));
+    }
+
+    /**
+     * Set the consumer's hold on the product to quantity units and restart its TTL
+     *
+     * @param stock read only when the product has no counter yet
+     * @return false, leaving any previous hold as it was, when fewer units are free
+     */
+    public boolean reserve(int productId, int consumerId, int quantity, IntSupplier stock) {
+        Map<Integer, Counter> shard = shard(productId);
+        int initialStock = -1;
+        while (true) {
+            long now = System.currentTimeMillis();
+            synchronized (shard) {
+                Counter counter = shard.get(productId);
+                if (counter == null && initialStock >= 0) {
+                    counter = new Counter(initialStock);
+                    shard.put(productId, counter);
+                }
+                if (counter != null) {
+                    counter.expire(now);
+                    if (counter.availableTo(consumerId) < quantity) {
+                        return false;
+                    }
+                    counter.put(consumerId, new Hold(quantity, now + ttlMs));
+                    return true;
+                }
+            }
+            // First hold on the product, its stock is read outside the lock as it may hit the database
+            initialStock = stock.getAsInt();
+        }
+    }
+
+    /**
+     * Shrink the consumer's hold to quantity units, releasing it when that is zero
+     */
+    public void reduce(int productId, int consumerId, int quantity) {
+        Map<Integer, Counter> shard = shard(productId);
+        synchronized (shard) {
+            Counter counter = shard.get(productId);
+            if (counter == null) {
+                return;
+            }
+            Hold hold = counter.holds.get(consumerId);
+            if (quantity <= 0) {
+                counter.remove(consumerId);
+            } else if (hold != null && hold.quantity() > quantity) {
+                counter.put(consumerId, new Hold(quantity, hold.expiresAt()));
+            }
+        }
+    }
+
+    public void release(int productId, int consumerId) {
+        reduce(productId, consumerId, 0);
+    }
+
+    /**
+     * Units of the product the consumer could hold, counting what they already hold
+     */
+    public int available(int productId, int consumerId, IntSupplier stock) {
+        Map<Integer, Counter> shard = shard(productId);
+        synchronized (shard) {
+            Counter counter = shard.get(productId);
+            if (counter != null) {
+                counter.expire(System.currentTimeMillis());
+                return counter.availableTo(consumerId);
+            }
+        }
+        return stock.getAsInt();
+    }
+
+    /**
+     * Turn the consumer's holds on the ordered products into the sale once the order commits.
+     * The products must carry the stock and version written by the order.
+     */
+    public void convertAfterCommit(int consumerId, Collection<Product> products) {
+        List<Product> sold = new ArrayList<>(products);
+        afterCommit(() -> convert(consumerId, sold));
+    }
+
+    /**
+     * Shrink the holds of consumers whose cart lines were trimmed, once the trim commits
+     *
+     * @param quantities consumerId -> quantity of their line after the trim
+     */
+    public void reduceAfterCommit(int productId, Map<Integer, Integer> quantities) {
+        Map<Integer, Integer> trimmed = new HashMap<>(quantities);
+        afterCommit(() -> trimmed.forEach((consumerId, quantity) -> reduce(productId, consumerId, quantity)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void convert(int consumerId, List<Product> sold) {
+        for (Product product : sold) {
+            Map<Integer, Counter> shard = shard(product.getProductId());
+            synchronized (shard) {
+                Counter counter = shard.get(product.getProductId());
+                if (counter != null) {
+                    // Stock and hold change together, so the sold units are never counted twice or freed early
+                    counter.sync(product.getStock(), product.getVersion());
+                    counter.remove(consumerId);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Map<Integer, Counter> shard = shard(event.getProductId());
+        synchronized (shard) {
+            Product product = event.getProduct();
+            if (product == null) {
+                shard.remove(event.getProductId());
+                return;
+            }
+            Counter counter = shard.get(event.getProductId());
+            if (counter != null) {
+                counter.sync(product.getStock(), product.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Drop expired holds, and the counters left without any
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:30000}")
+    public void expireHolds() {
+        long now = System.currentTimeMillis();
+        for (Map<Integer, Counter> shard : shards) {
+            synchronized (shard) {
+                Iterator<Counter> it = shard.values().iterator();
+                while (it.hasNext()) {
+                    Counter counter = it.next();
+                    counter.expire(now);
+                    if (counter.holds.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sync the counters with Product.stock, correcting any drift from missed or reordered events
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        try {
+            List<Integer> productIds = new ArrayList<>();
+            for (Map<Integer, Counter> shard : shards) {
+                synchronized (shard) {
+                    productIds.addAll(shard.keySet());
+                }
+            }
+            if (productIds.isEmpty()) {
+                return;
+            }
+
+            Set<Integer> found = new HashSet<>();
+            for (Object[] row : productRepo.findStockColumnsByIds(productIds)) {
+                int productId = (Integer) row[0];
+                found.add(productId);
+                Map<Integer, Counter> shard = shard(productId);
+                synchronized (shard) {
+                    Counter counter = shard.get(productId);
+                    if (counter != null) {
+                        counter.sync((Integer) row[1], (Long) row[2]);
+                    }
+                }
+            }
+
+            // Deleted products
+            for (Integer productId : productIds) {
+                if (!found.contains(productId)) {
+                    Map<Integer, Counter> shard = shard(productId);
+                    synchronized (shard) {
+                        shard.remove(productId);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to reconcile stock reservations: {}", e.getMessage(), e);
+        }
+    }
+}
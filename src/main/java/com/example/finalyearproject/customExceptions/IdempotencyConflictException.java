@@ -0,0 +1,10 @@
+package com.example.finalyearproject.customExceptions;
+
+/**
+ * An Idempotency-Key that cannot be honoured: reused for a different request, or its first request is still running
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String s) {
+        super(s);
+    }
+}
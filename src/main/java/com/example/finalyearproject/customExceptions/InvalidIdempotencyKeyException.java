@@ -0,0 +1,10 @@
+package com.example.finalyearproject.customExceptions;
+
+/**
+ * An Idempotency-Key header the server does not accept, such as one longer than allowed
+ */
+public class InvalidIdempotencyKeyException extends RuntimeException {
+    public InvalidIdempotencyKeyException(String s) {
+        super(s);
+    }
+}
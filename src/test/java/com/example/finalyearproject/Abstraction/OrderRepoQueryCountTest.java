@@ -0,0 +1,168 @@
+package com.example.finalyearproject.Abstraction;
+
+import com.example.finalyearproject.DataStore.*;
+import com.example.finalyearproject.Utility.OrderSummaryDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Order and farmer inbox reads must load in a bounded number of queries, however many orders and items there are
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderRepoQueryCountTest {
+
+    private static final int ORDERS = 50;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Autowired
+    private FarmerOrderLineRepo farmerOrderLineRepo;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Consumer consumer;
+    private Farmer farmer;
+    private int firstOrderId;
+
+    @BeforeEach
+    void setUp() {
+        farmer = new Farmer();
+        farmer.setFirstName("Test");
+        farmer.setLastName("Farmer");
+        farmer.setFarmerEmail("farmer@example.com");
+        farmer.setFarmerPassword("secret");
+        farmer.setFarmerPhone("9000000001");
+        farmer.setFarmerAddress("Farm road");
+        entityManager.persist(farmer);
+
+        consumer = new Consumer();
+        consumer.setConsumerFirstName("Test");
+        consumer.setConsumerLastName("Consumer");
+        consumer.setConsumerEmail("consumer@example.com");
+        consumer.setConsumerPassword("secret");
+        consumer.setConsumerPhone("9000000002");
+        consumer.setConsumerAddress("Main street");
+        entityManager.persist(consumer);
+
+        Product[] products = new Product[10];
+        for (int i = 0; i < products.length; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setDescription("Description " + i);
+            product.setPrice(10 + i);
+            product.setStock(100);
+            product.setCategory(CategoryType.values()[i % CategoryType.values().length]);
+            product.setFarmer(farmer);
+            entityManager.persist(product);
+            entityManager.persist(new ProductImage(null, "image" + i, "https://img/" + i, product));
+            products[i] = product;
+        }
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setConsumer(consumer);
+            order.setOrderStatus(OrderStatus.PLACED);
+            entityManager.persist(order);
+            if (o == 0) {
+                firstOrderId = order.getOrderId();
+            }
+
+            for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(products[(o + i) % products.length]);
+                item.setQuantity(1);
+                item.setUnitPrice(item.getProduct().getPrice());
+                entityManager.persist(item);
+                entityManager.persist(new FarmerOrderLine(order, item));
+            }
+
+            DeliveryAddresses address = new DeliveryAddresses();
+            address.setStreetAddress("Street " + o);
+            address.setCity("City");
+            address.setPincode("560001");
+            address.setState("State");
+            address.setConsumer(consumer);
+            address.setOrder(order);
+            entityManager.persist(address);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics().clear();
+    }
+
+    @Test
+    void orderHistoryLoadsInBoundedQueries() throws Exception {
+        List<OrderSummaryDTO> orders = orderRepo.findSummariesByConsumerId(consumer.getConsumerId(), PageRequest.of(0, ORDERS));
+        String json = objectMapper.writeValueAsString(orders);
+
+        assertEquals(ORDERS, orders.size());
+        assertTrue(orders.stream().allMatch(order -> order.getItemCount() == ITEMS_PER_ORDER));
+        assertTrue(json.contains("thumbnailUrl"));
+        assertQueriesAtMost(1);
+    }
+
+    @Test
+    void orderDetailLoadsInBoundedQueries() throws Exception {
+        Order order = orderRepo.findWithItemsByOrderId(firstOrderId).orElseThrow();
+        objectMapper.writeValueAsString(order);
+
+        assertEquals(ITEMS_PER_ORDER, order.getOrderItems().size());
+        assertQueriesAtMost(2);
+    }
+
+    @Test
+    void farmerOrderViewLoadsInBoundedQueries() throws Exception {
+        Page<FarmerOrderLine> lines = farmerOrderLineRepo.findByFarmerIdAndOrderStatus(farmer.getFarmerId(),
+                OrderStatus.PLACED, PageRequest.of(0, 20, Sort.by(Sort.Order.desc("placedAt"), Sort.Order.desc("id"))));
+        objectMapper.writeValueAsString(lines.getContent());
+
+        assertEquals(ORDERS * ITEMS_PER_ORDER, lines.getTotalElements());
+        assertEquals(20, lines.getContent().size());
+        // The page and its count
+        assertQueriesAtMost(2);
+    }
+
+    @Test
+    void farmerOrderViewOfAllStatusesLoadsInBoundedQueries() throws Exception {
+        Page<FarmerOrderLine> lines = farmerOrderLineRepo.findByFarmerId(farmer.getFarmerId(),
+                PageRequest.of(1, 20, Sort.by(Sort.Order.desc("placedAt"), Sort.Order.desc("id"))));
+        objectMapper.writeValueAsString(lines.getContent());
+
+        assertEquals(ORDERS * ITEMS_PER_ORDER, lines.getTotalElements());
+        assertEquals(20, lines.getContent().size());
+        assertQueriesAtMost(2);
+    }
+
+    private void assertQueriesAtMost(long expected) {
+        long executed = statistics().getPrepareStatementCount();
+        assertTrue(executed <= expected, "Expected at most " + expected + " queries but " + executed + " were executed");
+    }
+
+    private Statistics statistics() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+}
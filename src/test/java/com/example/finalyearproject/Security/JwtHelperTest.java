@@ -0,0 +1,112 @@
+package com.example.finalyearproject.Security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tokens are verified once and then served from the cache until they expire, never past its bound
+ */
+class JwtHelperTest {
+
+    private JwtHelper jwtHelper;
+
+    @BeforeEach
+    void setUp() {
+        jwtHelper = new JwtHelper();
+        ReflectionTestUtils.setField(jwtHelper, "maxCachedTokens", 2);
+    }
+
+    @Test
+    void verifiedClaimsAreCached() {
+        UserDetails farmer = user("farmer@example.com", "FARMER");
+        String token = jwtHelper.generateToken(farmer);
+
+        VerifiedJwt jwt = jwtHelper.verify(token);
+
+        assertSame(jwt, jwtHelper.verify(token));
+        assertEquals("farmer@example.com", jwt.username());
+        assertEquals(List.of("FARMER"), jwt.authorities());
+        assertEquals("FARMER", jwt.role());
+        assertTrue(jwtHelper.validateToken(token, farmer));
+        assertFalse(jwtHelper.validateToken(jwt, user("other@example.com", "FARMER")));
+        assertEquals(1, jwtHelper.cachedTokens());
+    }
+
+    @Test
+    void claimsAreImmutable() {
+        VerifiedJwt jwt = jwtHelper.verify(jwtHelper.generateToken(user("consumer@example.com", "CONSUMER")));
+
+        assertThrows(UnsupportedOperationException.class, () -> jwt.authorities().add("FARMER"));
+        jwt.expiration().setTime(0);
+        assertFalse(jwt.isExpired());
+    }
+
+    @Test
+    void cachedTokenIsRejectedOnceExpired() throws Exception {
+        String token = token("consumer@example.com", System.currentTimeMillis() + 2000);
+        jwtHelper.verify(token);
+        assertEquals(1, jwtHelper.cachedTokens());
+
+        Thread.sleep(2100);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtHelper.verify(token));
+        assertEquals(0, jwtHelper.cachedTokens());
+    }
+
+    @Test
+    void invalidTokensAreRejectedAndNotCached() {
+        String token = jwtHelper.generateToken(user("consumer@example.com", "CONSUMER"));
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + "invalid";
+
+        assertThrows(JwtException.class, () -> jwtHelper.verify(tampered));
+        assertThrows(ExpiredJwtException.class,
+                () -> jwtHelper.verify(token("consumer@example.com", System.currentTimeMillis() - 1000)));
+        assertEquals(0, jwtHelper.cachedTokens());
+    }
+
+    @Test
+    void cacheStaysWithinItsBound() throws Exception {
+        String expiring = token("first@example.com", System.currentTimeMillis() + 2000);
+        jwtHelper.verify(expiring);
+        jwtHelper.verify(jwtHelper.generateToken(user("second@example.com", "CONSUMER")));
+
+        // Full, the third token is still verified but not cached
+        String third = jwtHelper.generateToken(user("third@example.com", "CONSUMER"));
+        VerifiedJwt jwt = jwtHelper.verify(third);
+        assertEquals("third@example.com", jwt.username());
+        assertNotSame(jwt, jwtHelper.verify(third));
+        assertEquals(2, jwtHelper.cachedTokens());
+
+        // The sweep makes room again
+        Thread.sleep(2100);
+        jwtHelper.evictExpired();
+        assertEquals(1, jwtHelper.cachedTokens());
+        assertSame(jwtHelper.verify(third), jwtHelper.verify(third));
+    }
+
+    private String token(String subject, long expiresAt) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .claim("authorities", "CONSUMER")
+                .setExpiration(new Date(expiresAt))
+                .signWith(jwtHelper.generateKey(), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    private static UserDetails user(String username, String authority) {
+        return new User(username, "secret", List.of(new SimpleGrantedAuthority(authority)));
+    }
+}
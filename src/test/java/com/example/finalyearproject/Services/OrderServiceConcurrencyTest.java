@@ -0,0 +1,199 @@
+package com.example.finalyearproject.Services;
+
+import com.example.finalyearproject.Abstraction.ConsumerRepo;
+import com.example.finalyearproject.Abstraction.FarmerOrderLineRepo;
+import com.example.finalyearproject.Abstraction.FarmerRepo;
+import com.example.finalyearproject.Abstraction.OrderRepo;
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.*;
+import com.example.finalyearproject.Utility.ApiResponse;
+import com.example.finalyearproject.Utility.CartPersister;
+import com.example.finalyearproject.Utility.CartState;
+import com.example.finalyearproject.Utility.CartStore;
+import com.example.finalyearproject.Utility.StockReservations;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Many buyers checking out the same products at once must never take more stock than there is
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:mem:order-stress;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        // Placements on the same products run one after another, the last buyers wait long for a connection
+        "spring.datasource.hikari.connection-timeout=180000",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // No check constraints from the validation annotations, the stock guard has to come from the update itself
+        "spring.jpa.properties.jakarta.persistence.validation.mode=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OrderService.class, CartStore.class, CartPersister.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceConcurrencyTest {
+
+    private static final int BUYERS = 200;
+    private static final int SCARCE_STOCK = 120;
+    private static final int PLENTIFUL_STOCK = 150;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private FarmerRepo farmerRepo;
+
+    @Autowired
+    private ConsumerRepo consumerRepo;
+
+    @Autowired
+    private OrderRepo orderRepo;
+
+    @Autowired
+    private FarmerOrderLineRepo farmerOrderLineRepo;
+
+    // Real unless a test stubs it, reset after each test
+    @SpyBean
+    private StockReservations stockReservations;
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        assertNoOversell(0);
+    }
+
+    /**
+     * With every hold granted, only the conditional stock decrement stands between the buyers and overselling
+     */
+    @Test
+    void conditionalDecrementAloneNeverOversells() throws Exception {
+        doReturn(true).when(stockReservations).reserve(anyInt(), anyInt(), anyInt(), any());
+
+        assertNoOversell(1);
+        verify(stockReservations, atLeast(2 * BUYERS)).reserve(anyInt(), anyInt(), anyInt(), any());
+    }
+
+    /**
+     * Run BUYERS concurrent checkouts against fresh products, run keeps the users of each test apart
+     */
+    private void assertNoOversell(int run) throws Exception {
+        Farmer farmer = new Farmer();
+        farmer.setFirstName("Test");
+        farmer.setLastName("Farmer");
+        farmer.setFarmerEmail("farmer" + run + "@example.com");
+        farmer.setFarmerPassword("secret");
+        farmer.setFarmerPhone(String.valueOf(9000000000L + run));
+        farmer.setFarmerAddress("Farm road");
+        farmer = farmerRepo.save(farmer);
+
+        // Every cart holds both products, listed in opposite orders, to also exercise the lock ordering
+        Product scarce = productRepo.save(newProduct("Scarce", SCARCE_STOCK, farmer));
+        Product plentiful = productRepo.save(newProduct("Plentiful", PLENTIFUL_STOCK, farmer));
+
+        List<Integer> consumerIds = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            Consumer consumer = new Consumer();
+            consumer.setConsumerFirstName("Buyer");
+            consumer.setConsumerLastName(String.valueOf(i));
+            consumer.setConsumerEmail("buyer" + run + "-" + i + "@example.com");
+            consumer.setConsumerPassword("secret");
+            consumer.setConsumerPhone(String.valueOf(8000000000L + run * BUYERS + i));
+            consumer.setConsumerAddress("Main street");
+            int consumerId = consumerRepo.save(consumer).getConsumerId();
+            consumerIds.add(consumerId);
+
+            boolean scarceFirst = i % 2 == 0;
+            cartStore.update(consumerId, state -> {
+                addToCart(state, scarceFirst ? scarce : plentiful);
+                addToCart(state, scarceFirst ? plentiful : scarce);
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(BUYERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger placed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int consumerId : consumerIds) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ApiResponse<Order> response = orderService.placeOrder(consumerId, null);
+                    if (response.getErrors() == null) {
+                        placed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int scarceLeft = productRepo.findById(scarce.getProductId()).orElseThrow().getStock();
+        int plentifulLeft = productRepo.findById(plentiful.getProductId()).orElseThrow().getStock();
+        Set<Integer> buyers = new HashSet<>(consumerIds);
+        long placedOrders = orderRepo.findAll().stream()
+                .filter(order -> order.getOrderStatus() == OrderStatus.PLACED)
+                .filter(order -> buyers.contains(order.getConsumer().getConsumerId()))
+                .count();
+        long farmerLines = farmerOrderLineRepo.findByFarmerId(farmer.getFarmerId(), Pageable.unpaged()).getTotalElements();
+
+        assertEquals(SCARCE_STOCK, placed.get());
+        assertEquals(SCARCE_STOCK, placedOrders);
+        assertEquals(0, scarceLeft);
+        // Rejected orders must give back the stock they took from the other product
+        assertEquals(PLENTIFUL_STOCK - SCARCE_STOCK, plentifulLeft);
+        // The farmer inbox gets both lines of every placed order, and nothing of the rejected ones
+        assertEquals(2L * SCARCE_STOCK, farmerLines);
+    }
+
+    private static Product newProduct(String name, int stock, Farmer farmer) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(name + " product");
+        product.setPrice(10);
+        product.setStock(stock);
+        product.setCategory(CategoryType.values()[0]);
+        product.setFarmer(farmer);
+        return product;
+    }
+
+    private void addToCart(CartState state, Product product) {
+        CartState.Line line = cartStore.addLine(state, product.getProductId());
+        line.setProductName(product.getName());
+        line.setQuantity(1);
+        line.setUnitPriceCents(product.getPriceCents());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.customExceptions.IdempotencyConflictException;
+import com.example.finalyearproject.customExceptions.InvalidIdempotencyKeyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A retried write must run once and get the first response back
+ */
+class IdempotencyStoreTest {
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(store, "maxEntries", 100);
+        ReflectionTestUtils.setField(store, "waitMs", 10_000L);
+    }
+
+    @Test
+    void retryIsReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+        ResponseEntity<String> first = store.execute("cart", "key", "add:1", () -> ok(runs));
+        ResponseEntity<String> retry = store.execute("cart", "key", "add:1", () -> ok(runs));
+
+        assertEquals(1, runs.get());
+        assertEquals(first.getBody(), retry.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void concurrentDuplicatesWaitForTheFirstRequest() throws Exception {
+        int duplicates = 16;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(duplicates + 1);
+        try {
+            Future<ResponseEntity<String>> first = executor.submit(() -> store.execute("order", "key", "place", () -> {
+                firstStarted.countDown();
+                await(release);
+                return ok(runs);
+            }));
+            firstStarted.await();
+
+            List<Future<ResponseEntity<String>>> retries = new ArrayList<>();
+            for (int i = 0; i < duplicates; i++) {
+                retries.add(executor.submit(() -> store.execute("order", "key", "place", () -> ok(runs))));
+            }
+            // The duplicates are blocked on the first request, not running their own
+            Thread.sleep(200);
+            retries.forEach(retry -> assertFalse(retry.isDone()));
+
+            release.countDown();
+            String body = first.get(10, TimeUnit.SECONDS).getBody();
+            for (Future<ResponseEntity<String>> retry : retries) {
+                ResponseEntity<String> response = retry.get(10, TimeUnit.SECONDS);
+                assertEquals(body, response.getBody());
+                assertEquals("true", response.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+            }
+            assertEquals(1, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void serverErrorsAreNotReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("cart", "key", "add:1", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("failed");
+        });
+        ResponseEntity<String> retry = store.execute("cart", "key", "add:1", () -> ok(runs));
+
+        assertEquals(2, runs.get());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRejected() {
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("cart", "key", "add:1", () -> ok(runs));
+
+        assertThrows(IdempotencyConflictException.class, () -> store.execute("cart", "key", "add:2", () -> ok(runs)));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void keysAreScoped() {
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("consumer1", "key", "add:1", () -> ok(runs));
+        store.execute("consumer2", "key", "add:1", () -> ok(runs));
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void overlongKeyIsInvalid() {
+        String key = "k".repeat(256);
+        assertThrows(InvalidIdempotencyKeyException.class, () -> store.execute("cart", key, "add:1", () -> ok(new AtomicInteger())));
+    }
+
+    @Test
+    void runningRequestIsNotEvicted() throws Exception {
+        ReflectionTestUtils.setField(store, "maxEntries", 1);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<String>> first = executor.submit(() -> store.execute("order", "running", "place", () -> {
+                firstStarted.countDown();
+                await(release);
+                return ok(runs);
+            }));
+            firstStarted.await();
+
+            // Past the limit, but the only entry that could go is still running
+            store.execute("order", "other", "place", () -> ok(runs));
+            store.execute("order", "another", "place", () -> ok(runs));
+
+            release.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            ResponseEntity<String> retry = store.execute("order", "running", "place", () -> ok(runs));
+
+            assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+            assertEquals(3, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ResponseEntity<String> ok(AtomicInteger runs) {
+        return ResponseEntity.ok("response " + runs.incrementAndGet());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.Abstraction.ProductRepo;
+import com.example.finalyearproject.DataStore.CategoryType;
+import com.example.finalyearproject.DataStore.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Facet counts of the index built from ProductRepo.findAllFacetColumns rows
+ */
+class ProductFacetIndexTest {
+
+    private static final LocalDate JANUARY = LocalDate.of(2026, 1, 10);
+    private static final LocalDate JUNE = LocalDate.of(2026, 6, 1);
+
+    private final ProductRepo productRepo = mock(ProductRepo.class);
+    private final ProductFacetIndex index = new ProductFacetIndex();
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "productRepo", productRepo);
+        // id, category, organic, price cents, stock, available from
+        rows.add(new Object[]{1, CategoryType.FRUITS, true, 3000L, 0, JANUARY});
+        rows.add(new Object[]{2, CategoryType.FRUITS, false, 7500L, 5, JANUARY});
+        rows.add(new Object[]{3, CategoryType.VEGETABLES, true, 12000L, 20, JANUARY});
+        rows.add(new Object[]{4, CategoryType.DAIRY, false, 60000L, 100, JUNE});
+        rows.add(new Object[]{5, CategoryType.VEGETABLES, false, 4000L, 60, JUNE});
+        when(productRepo.findAllFacetColumns()).thenReturn(rows);
+    }
+
+    @Test
+    void countsEveryProductWithoutFilters() {
+        index.rebuild();
+        assertTrue(index.isReady());
+
+        ProductFacets facets = index.countFacets(new ProductFilterDTO(), null);
+
+        assertEquals(2L, facets.getCategories().get("FRUITS"));
+        assertEquals(2L, facets.getCategories().get("VEGETABLES"));
+        assertEquals(1L, facets.getCategories().get("DAIRY"));
+        assertEquals(0L, facets.getCategories().get("MEAT"));
+        assertEquals(Map.of("true", 2L, "false", 3L), facets.getOrganic());
+        assertEquals(Map.of("0-50", 2L, "50-100", 1L, "100-250", 1L, "250-500", 0L, "500+", 1L),
+                facets.getPriceRanges());
+        assertEquals(Map.of("out_of_stock", 1L, "1-10", 1L, "11-50", 1L, "51+", 2L), facets.getStockRanges());
+    }
+
+    @Test
+    void eachFacetIgnoresItsOwnFilter() {
+        index.rebuild();
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setCategory("vegetables");
+        filter.setOrganic(true);
+
+        ProductFacets facets = index.countFacets(filter, null);
+
+        // Organic products of any category
+        assertEquals(1L, facets.getCategories().get("FRUITS"));
+        assertEquals(1L, facets.getCategories().get("VEGETABLES"));
+        assertEquals(0L, facets.getCategories().get("DAIRY"));
+        // Vegetables, organic or not
+        assertEquals(Map.of("true", 1L, "false", 1L), facets.getOrganic());
+        // Both filters apply to the others
+        assertEquals(1L, facets.getPriceRanges().get("100-250"));
+        assertEquals(0L, facets.getPriceRanges().get("0-50"));
+        assertEquals(1L, facets.getStockRanges().get("11-50"));
+        assertEquals(0L, facets.getStockRanges().get("51+"));
+    }
+
+    @Test
+    void priceFilterNarrowsTheOtherFacetsOnly() {
+        index.rebuild();
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setMaxPrice(100.0);
+
+        ProductFacets facets = index.countFacets(filter, null);
+
+        assertEquals(2L, facets.getCategories().get("FRUITS"));
+        assertEquals(1L, facets.getCategories().get("VEGETABLES"));
+        assertEquals(0L, facets.getCategories().get("DAIRY"));
+        assertEquals(1L, facets.getPriceRanges().get("500+"));
+        assertEquals(Map.of("out_of_stock", 1L, "1-10", 1L, "11-50", 0L, "51+", 1L), facets.getStockRanges());
+    }
+
+    @Test
+    void dateFilterAppliesToEveryFacet() {
+        index.rebuild();
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setAvailableTo(Date.from(LocalDate.of(2026, 3, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+
+        ProductFacets facets = index.countFacets(filter, null);
+
+        assertEquals(1L, facets.getCategories().get("VEGETABLES"));
+        assertEquals(0L, facets.getCategories().get("DAIRY"));
+        assertEquals(Map.of("true", 2L, "false", 1L), facets.getOrganic());
+        assertEquals(0L, facets.getPriceRanges().get("500+"));
+        assertEquals(0L, facets.getStockRanges().get("51+"));
+    }
+
+    @Test
+    void countsOnlyProductsMatchingTheTextQuery() {
+        index.rebuild();
+
+        ProductFacets facets = index.countFacets(new ProductFilterDTO(), Set.of(3, 4, 99));
+
+        assertEquals(0L, facets.getCategories().get("FRUITS"));
+        assertEquals(1L, facets.getCategories().get("VEGETABLES"));
+        assertEquals(1L, facets.getCategories().get("DAIRY"));
+        assertEquals(Map.of("true", 1L, "false", 1L), facets.getOrganic());
+    }
+
+    @Test
+    void productChangesUpdateTheCounts() {
+        index.rebuild();
+        Product product = new Product();
+        product.setProductId(2);
+        product.setCategory(CategoryType.DAIRY);
+        product.setPrice(8);
+        product.setStock(0);
+        product.setAvailableFromDate(JANUARY);
+
+        index.onProductChanged(ProductChangedEvent.saved(product));
+        index.onProductChanged(ProductChangedEvent.deleted(4));
+
+        ProductFacets facets = index.countFacets(new ProductFilterDTO(), null);
+        assertEquals(1L, facets.getCategories().get("FRUITS"));
+        assertEquals(1L, facets.getCategories().get("DAIRY"));
+        assertEquals(0L, facets.getPriceRanges().get("500+"));
+        assertEquals(2L, facets.getStockRanges().get("out_of_stock"));
+    }
+
+    @Test
+    void failedBuildIsRetriedUntilItSucceeds() {
+        when(productRepo.findAllFacetColumns()).thenThrow(new IllegalStateException("database down")).thenReturn(rows);
+
+        index.rebuild();
+        assertFalse(index.isReady());
+
+        index.rebuildIfNotReady();
+        assertTrue(index.isReady());
+        index.rebuildIfNotReady();
+
+        verify(productRepo, times(2)).findAllFacetColumns();
+        assertEquals(2L, index.countFacets(new ProductFilterDTO(), null).getCategories().get("FRUITS"));
+    }
+}
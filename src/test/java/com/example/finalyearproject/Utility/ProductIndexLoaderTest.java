@@ -0,0 +1,114 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Product changes committed while an index loads must survive the older rows it installs
+ */
+class ProductIndexLoaderTest {
+
+    private final ProductIndexLoader loader = new ProductIndexLoader();
+
+    // productId -> name, standing in for an index
+    private final Map<Integer, String> index = new TreeMap<>();
+
+    @Test
+    void changesDuringALoadAreReplayedOverTheRows() throws Exception {
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> load = executor.submit(() -> loader.load(() -> {
+                // Read before the changes below committed
+                List<Object[]> rows = List.of(new Object[]{1, "Tomato"}, new Object[]{2, "Onion"});
+                queried.countDown();
+                await(changed);
+                return rows;
+            }, this::install, this::apply));
+
+            queried.await();
+            loader.onProductChanged(ProductChangedEvent.saved(product(1, "Cherry tomato")), this::apply);
+            loader.onProductChanged(ProductChangedEvent.saved(product(3, "Potato")), this::apply);
+            loader.onProductChanged(ProductChangedEvent.deleted(2), this::apply);
+            assertFalse(loader.isLoaded());
+            changed.countDown();
+
+            assertTrue(load.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(loader.isLoaded());
+        assertEquals(Map.of(1, "Cherry tomato", 3, "Potato"), index);
+    }
+
+    @Test
+    void changesAfterALoadAreNotReplayedByTheNext() {
+        loader.load(() -> List.<Object[]>of(new Object[]{1, "Tomato"}), this::install, this::apply);
+        loader.onProductChanged(ProductChangedEvent.saved(product(1, "Cherry tomato")), this::apply);
+
+        loader.load(() -> List.<Object[]>of(new Object[]{1, "Roma tomato"}), this::install, this::apply);
+
+        assertEquals(Map.of(1, "Roma tomato"), index);
+    }
+
+    @Test
+    void failedLoadLeavesTheIndexNotLoaded() {
+        index.put(1, "Tomato");
+
+        assertThrows(IllegalStateException.class, () -> loader.load(() -> {
+            throw new IllegalStateException("database down");
+        }, this::install, this::apply));
+
+        assertFalse(loader.isLoaded());
+        assertEquals(Map.of(1, "Tomato"), index);
+
+        // A retry can run, and nothing is buffered from the failed one
+        assertTrue(loader.load(() -> List.<Object[]>of(new Object[]{2, "Onion"}), this::install, this::apply));
+        assertTrue(loader.isLoaded());
+        assertEquals(Map.of(2, "Onion"), index);
+    }
+
+    private void install(List<Object[]> rows) {
+        index.clear();
+        for (Object[] row : rows) {
+            index.put((Integer) row[0], (String) row[1]);
+        }
+    }
+
+    private void apply(ProductChangedEvent event) {
+        if (event.isDeleted()) {
+            index.remove(event.getProductId());
+        } else {
+            index.put(event.getProductId(), event.getProduct().getName());
+        }
+    }
+
+    private static Product product(int productId, String name) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setName(name);
+        return product;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.finalyearproject.Utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every seed must order all products exactly once, or paging through the feed repeats or skips some
+ */
+class RandomProductFeedTest {
+
+    // Powers of two and their neighbours exercise the cycle walking around the Feistel domain size
+    private static final int[] SIZES = {1, 2, 3, 4, 5, 7, 8, 9, 15, 16, 17, 100, 255, 256, 257, 1000, 4097};
+
+    private static final long[] SEEDS = {0L, 1L, -1L, 42L, Long.MAX_VALUE, Long.MIN_VALUE, 0x9E3779B97F4A7C15L};
+
+    @Test
+    void permuteIsABijectionOnEverySize() {
+        for (int n : SIZES) {
+            for (long seed : SEEDS) {
+                boolean[] seen = new boolean[n];
+                for (int index = 0; index < n; index++) {
+                    int position = RandomProductFeed.permute(index, n, seed);
+                    assertTrue(position >= 0 && position < n, "n=" + n + " seed=" + seed + " index=" + index + " -> " + position);
+                    assertFalse(seen[position], "n=" + n + " seed=" + seed + " maps two indexes to " + position);
+                    seen[position] = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    void differentSeedsGiveDifferentOrders() {
+        int n = 1000;
+        Set<List<Integer>> orders = new HashSet<>();
+        for (long seed : SEEDS) {
+            List<Integer> order = new ArrayList<>(n);
+            for (int index = 0; index < n; index++) {
+                order.add(RandomProductFeed.permute(index, n, seed));
+            }
+            orders.add(order);
+        }
+        assertEquals(SEEDS.length, orders.size());
+    }
+
+    @Test
+    void pagesCoverEveryProductOnce() {
+        RandomProductFeed feed = new RandomProductFeed();
+        for (int productId = 1; productId <= 53; productId++) {
+            feed.setAvailable(productId * 3, true);
+        }
+
+        long seed = RandomProductFeed.newSeed();
+        List<Integer> seen = new ArrayList<>();
+        for (int page = 0; page * 10 < feed.size(); page++) {
+            seen.addAll(feed.getPageOfIds(seed, page, 10));
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int productId = 1; productId <= 53; productId++) {
+            expected.add(productId * 3);
+        }
+        assertNotEquals(expected, seen);
+        Collections.sort(seen);
+        assertEquals(expected, seen);
+    }
+}
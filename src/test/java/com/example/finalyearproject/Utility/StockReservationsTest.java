@@ -0,0 +1,184 @@
+package com.example.finalyearproject.Utility;
+
+import com.example.finalyearproject.DataStore.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Holds must never promise more units than the product has, and must follow the product's stock
+ */
+class StockReservationsTest {
+
+    private static final int PRODUCT = 7;
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    private StockReservations reservations;
+
+    @BeforeEach
+    void setUp() {
+        reservations = new StockReservations();
+        ReflectionTestUtils.setField(reservations, "ttlMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void holdsOfOtherCartsAreNotAvailable() {
+        assertTrue(reservations.reserve(PRODUCT, ALICE, 7, () -> 10));
+        assertFalse(reservations.reserve(PRODUCT, BOB, 4, () -> 10));
+        assertTrue(reservations.reserve(PRODUCT, BOB, 3, () -> 10));
+
+        assertEquals(7, reservations.available(PRODUCT, ALICE, () -> 10));
+        assertEquals(3, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void failedReserveKeepsThePreviousHold() {
+        assertTrue(reservations.reserve(PRODUCT, ALICE, 4, () -> 10));
+        assertFalse(reservations.reserve(PRODUCT, ALICE, 11, () -> 10));
+
+        assertEquals(6, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void stockIsReadOnlyForTheFirstHold() {
+        AtomicInteger reads = new AtomicInteger();
+        reservations.reserve(PRODUCT, ALICE, 1, () -> {
+            reads.incrementAndGet();
+            return 10;
+        });
+        reservations.reserve(PRODUCT, BOB, 1, () -> {
+            reads.incrementAndGet();
+            return 10;
+        });
+
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    void reduceAndReleaseFreeUnits() {
+        reservations.reserve(PRODUCT, ALICE, 8, () -> 10);
+
+        reservations.reduce(PRODUCT, ALICE, 5);
+        assertEquals(5, reservations.available(PRODUCT, BOB, () -> 10));
+
+        reservations.release(PRODUCT, ALICE);
+        assertEquals(10, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void expiredHoldsAreReleased() {
+        ReflectionTestUtils.setField(reservations, "ttlMs", 0L);
+        reservations.reserve(PRODUCT, ALICE, 10, () -> 10);
+
+        assertTrue(reservations.reserve(PRODUCT, BOB, 10, () -> 10));
+
+        // Dropping the counter with its last hold makes the next hold read the stock again
+        reservations.expireHolds();
+        assertTrue(reservations.reserve(PRODUCT, ALICE, 20, () -> 20));
+    }
+
+    @Test
+    void olderStockVersionsAreIgnored() {
+        reservations.reserve(PRODUCT, ALICE, 2, () -> 10);
+
+        reservations.onProductChanged(ProductChangedEvent.saved(product(5, 2)));
+        reservations.onProductChanged(ProductChangedEvent.saved(product(100, 1)));
+
+        assertEquals(3, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void deletedProductDropsItsCounter() {
+        reservations.reserve(PRODUCT, ALICE, 10, () -> 10);
+
+        reservations.onProductChanged(ProductChangedEvent.deleted(PRODUCT));
+
+        assertEquals(4, reservations.available(PRODUCT, BOB, () -> 4));
+    }
+
+    @Test
+    void saleIsConvertedOnlyAfterCommit() {
+        reservations.reserve(PRODUCT, ALICE, 4, () -> 10);
+        reservations.reserve(PRODUCT, BOB, 6, () -> 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        reservations.convertAfterCommit(ALICE, List.of(product(6, 1)));
+
+        // Before the commit Alice still holds her units
+        assertEquals(0, reservations.available(PRODUCT, 3, () -> 10));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        // The 4 sold units left the stock and the hold together, Bob's 6 units are still held
+        assertEquals(0, reservations.available(PRODUCT, 3, () -> 10));
+        assertEquals(0, reservations.available(PRODUCT, ALICE, () -> 10));
+        assertEquals(6, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void saleIsConvertedAtOnceOutsideATransaction() {
+        reservations.reserve(PRODUCT, ALICE, 4, () -> 10);
+
+        reservations.convertAfterCommit(ALICE, List.of(product(6, 1)));
+
+        assertEquals(6, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    @Test
+    void stockEditTrimsCartAndOthersCanReserveTheFreedUnits() {
+        reservations.reserve(PRODUCT, ALICE, 9, () -> 10);
+
+        // The farmer cuts the stock to 6, Alice's cart line is trimmed to 6 once the trim commits
+        reservations.onProductChanged(ProductChangedEvent.saved(product(6, 2)));
+        TransactionSynchronizationManager.initSynchronization();
+        reservations.reduceAfterCommit(PRODUCT, Map.of(ALICE, 6));
+        assertFalse(reservations.reserve(PRODUCT, BOB, 1, () -> 6));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        // Restocked to 12, Bob gets everything beyond the 6 units left in Alice's cart
+        reservations.onProductChanged(ProductChangedEvent.saved(product(12, 3)));
+        assertFalse(reservations.reserve(PRODUCT, BOB, 7, () -> 12));
+        assertTrue(reservations.reserve(PRODUCT, BOB, 6, () -> 12));
+    }
+
+    @Test
+    void trimOfALineBelowItsHoldLeavesTheHold() {
+        reservations.reserve(PRODUCT, ALICE, 3, () -> 10);
+
+        reservations.reduceAfterCommit(PRODUCT, Map.of(ALICE, 5, BOB, 5));
+
+        assertEquals(7, reservations.available(PRODUCT, BOB, () -> 10));
+    }
+
+    private static Product product(int stock, long version) {
+        Product product = new Product();
+        product.setProductId(PRODUCT);
+        product.setStock(stock);
+        product.setVersion(version);
+        return product;
+    }
+}